@@ -0,0 +1,180 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.ServletRequest;
+
+import br.octahedron.util.Log;
+
+/**
+ * Gives access to the Servlet 3.0 asynchronous requests support, when the servlet container
+ * provides it. Cotopaxi is compiled against the Servlet 2.5 API, so the async methods are looked up
+ * by reflection, once.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class AsyncSupport {
+
+	private static final Log log = new Log(AsyncSupport.class);
+	private static final Method IS_ASYNC_SUPPORTED;
+	private static final Method START_ASYNC;
+	private static final Method SET_TIMEOUT;
+	private static final Method COMPLETE;
+	private static final Method ADD_LISTENER;
+	private static final Method GET_THROWABLE;
+	private static final Class<?> ASYNC_LISTENER;
+
+	static {
+		Method isSupported = null, start = null, timeout = null, complete = null, addListener = null, getThrowable = null;
+		Class<?> listener = null;
+		try {
+			isSupported = ServletRequest.class.getMethod("isAsyncSupported");
+			start = ServletRequest.class.getMethod("startAsync");
+			timeout = start.getReturnType().getMethod("setTimeout", long.class);
+			complete = start.getReturnType().getMethod("complete");
+			listener = Class.forName("javax.servlet.AsyncListener", false, ServletRequest.class.getClassLoader());
+			addListener = start.getReturnType().getMethod("addListener", listener);
+			getThrowable = Class.forName("javax.servlet.AsyncEvent", false, ServletRequest.class.getClassLoader()).getMethod("getThrowable");
+		} catch (Exception e) {
+			log.info("Servlet container doesn't support asynchronous requests");
+			isSupported = start = timeout = complete = addListener = getThrowable = null;
+			listener = null;
+		}
+		IS_ASYNC_SUPPORTED = isSupported;
+		START_ASYNC = start;
+		SET_TIMEOUT = timeout;
+		COMPLETE = complete;
+		ADD_LISTENER = addListener;
+		GET_THROWABLE = getThrowable;
+		ASYNC_LISTENER = listener;
+	}
+
+	private AsyncSupport() {
+	}
+
+	/**
+	 * Puts the given request in asynchronous mode, if supported.
+	 * 
+	 * @param timeout
+	 *            the async timeout, in milliseconds
+	 * @return the request's <code>AsyncContext</code>, or <code>null</code> if the request doesn't
+	 *         support asynchronous mode.
+	 */
+	static Object start(ServletRequest request, long timeout) {
+		if (START_ASYNC != null) {
+			try {
+				if ((Boolean) IS_ASYNC_SUPPORTED.invoke(request)) {
+					Object asyncContext = START_ASYNC.invoke(request);
+					SET_TIMEOUT.invoke(asyncContext, timeout);
+					return asyncContext;
+				}
+			} catch (Exception ex) {
+				log.warning(ex, "Unable to start asynchronous request: %s", ex.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Registers the given {@link Listener} at the given <code>AsyncContext</code>, through an
+	 * <code>AsyncListener</code> proxy.
+	 */
+	static void listen(Object asyncContext, Listener listener) {
+		try {
+			Object asyncListener = Proxy.newProxyInstance(ASYNC_LISTENER.getClassLoader(), new Class<?>[] { ASYNC_LISTENER },
+					new ListenerHandler(listener));
+			ADD_LISTENER.invoke(asyncContext, asyncListener);
+		} catch (Exception ex) {
+			log.warning(ex, "Unable to listen asynchronous request: %s", ex.getMessage());
+		}
+	}
+
+	/**
+	 * Completes the given <code>AsyncContext</code>. It does nothing if the given context is
+	 * <code>null</code>, i.e., the request isn't in asynchronous mode.
+	 */
+	static void complete(Object asyncContext) {
+		if (asyncContext != null) {
+			try {
+				COMPLETE.invoke(asyncContext);
+			} catch (Exception ex) {
+				log.warning(ex, "Unable to complete asynchronous request: %s", ex.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Handles the asynchronous request's timeout and error events. The container's default
+	 * handling runs only if the listener doesn't complete the request.
+	 */
+	interface Listener {
+
+		/**
+		 * Called, at a container thread, when the asynchronous request times out.
+		 */
+		void onTimeout();
+
+		/**
+		 * Called, at a container thread, when the asynchronous request fails, e.g., because the
+		 * client has gone away.
+		 */
+		void onError(Throwable error);
+	}
+
+	/**
+	 * The <code>AsyncListener</code> proxies' handler. It delegates the timeout and error events
+	 * to a {@link Listener}, and ignores the others.
+	 */
+	private static class ListenerHandler implements InvocationHandler {
+
+		private final Listener listener;
+
+		public ListenerHandler(Listener listener) {
+			this.listener = listener;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method,
+		 * java.lang.Object[])
+		 */
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (method.getDeclaringClass() == Object.class) {
+				// equals, hashCode and toString refers to the proxy itself
+				if ("equals".equals(name)) {
+					return proxy == args[0];
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else {
+					return "AsyncListener for " + this.listener;
+				}
+			} else if ("onTimeout".equals(name)) {
+				this.listener.onTimeout();
+			} else if ("onError".equals(name)) {
+				this.listener.onError((Throwable) GET_THROWABLE.invoke(args[0]));
+			}
+			return null;
+		}
+	}
+}
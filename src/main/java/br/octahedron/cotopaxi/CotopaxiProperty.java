@@ -103,7 +103,101 @@ public enum CotopaxiProperty {
 	/**
 	 * The property used to binds internationalization {@link NumberFormat}. Default: numberFormat
 	 */
-	I18N_NUMBER_FORMAT_PROPERTY("numberFormat");
+	I18N_NUMBER_FORMAT_PROPERTY("numberFormat"),
+	/**
+	 * The max number of requested URLs the router keeps cached, for each HTTP method. Set it to 0
+	 * to disable the routes cache. Default: 1000
+	 */
+	ROUTE_CACHE_SIZE("1000"),
+	/**
+	 * If <code>true</code>, all the mapped controllers are loaded and its actions are resolved when
+	 * the application starts, instead of on the first request for each controller. It also makes
+	 * the application fail to start if some controller or action doesn't exist. Default: false
+	 */
+	CONTROLLERS_EAGER_LOADING("false"),
+	/**
+	 * The max number of idle instances kept for each {@link br.octahedron.cotopaxi.inject.Scope#POOLED}
+	 * injected type. Default: 16
+	 */
+	INSTANCE_POOL_SIZE("16"),
+	/**
+	 * The max time, in milliseconds, to wait for a deferred response to be completed. Default:
+	 * 30000
+	 * 
+	 * @see br.octahedron.cotopaxi.controller.DeferredResponse
+	 */
+	ASYNC_TIMEOUT("30000"),
+	/**
+	 * The max number of requests concurrently handled by each controller class without a limit
+	 * defined at the configuration <code>limits</code> block. Set it to 0 to disable the default
+	 * limit. Default: 0
+	 * 
+	 * @see br.octahedron.cotopaxi.controller.ControllerLimiter
+	 */
+	DISPATCH_MAX_CONCURRENT("0"),
+	/**
+	 * The max number of requests waiting for each controller class without a limit defined at the
+	 * configuration <code>limits</code> block. Default: 0
+	 */
+	DISPATCH_MAX_QUEUE("0"),
+	/**
+	 * The max time, in milliseconds, a request waits for a limited controller before being
+	 * rejected. Default: 1000
+	 */
+	DISPATCH_QUEUE_TIMEOUT("1000"),
+	/**
+	 * The max number of forwards a request can do. If a request goes beyond it, it's answered with
+	 * a SERVER ERROR (500). Default: 10
+	 */
+	FORWARD_MAX_DEPTH("10"),
+	/**
+	 * If the not found (404) responses should be rendered just once per locale, and then served
+	 * from memory to every client. The cached page is rendered without the TemplateInterceptors,
+	 * and pages which set cookies or vary by request headers aren't cached. Even so, enable it
+	 * only if the not found template doesn't show request or session specific data, such as the
+	 * current user or a CSRF token. Default: false
+	 */
+	NOT_FOUND_CACHE("false"),
+	/**
+	 * The charset used to encode the rendered responses. Default: utf-8
+	 */
+	RESPONSE_ENCODING("utf-8"),
+	/**
+	 * The size, in chars, of the buffer used to write the rendered responses. Default: 8192
+	 */
+	RESPONSE_BUFFER_SIZE("8192"),
+	/**
+	 * The min size, in bytes, of a response to be compressed by the GzipInterceptor. Default: 1024
+	 */
+	COMPRESSION_THRESHOLD("1024"),
+	/**
+	 * If <code>true</code>, all the templates are parsed when the application starts, instead of
+	 * on the first request for each template. It also makes the application fail to start if some
+	 * template can't be parsed. It requires a {@link br.octahedron.cotopaxi.view.render.Preloadable}
+	 * TEMPLATE_RENDER. Default: false
+	 */
+	TEMPLATE_PRELOAD("false"),
+	/**
+	 * The templates profile: at <code>production</code> profile cached templates are never checked
+	 * for modifications, while at <code>development</code> profile they're checked every
+	 * TEMPLATE_MODIFICATION_CHECK_INTERVAL seconds. Default: development
+	 */
+	TEMPLATE_PROFILE("development"),
+	/**
+	 * If the parsed templates should be cached. They're always cached at <code>production</code>
+	 * TEMPLATE_PROFILE or with TEMPLATE_PRELOAD. Default: false
+	 */
+	TEMPLATE_CACHE("false"),
+	/**
+	 * The interval, in seconds, between checks for modifications of a cached template, at
+	 * development TEMPLATE_PROFILE. Default: 2
+	 */
+	TEMPLATE_MODIFICATION_CHECK_INTERVAL("2"),
+	/**
+	 * The max number of rendered pages kept at the page cache. Pages are cached only if the
+	 * controller asks for it. Default: 256
+	 */
+	PAGE_CACHE_SIZE("256");
 
 	private String defaultValue;
 
@@ -16,12 +16,19 @@
  */
 package br.octahedron.cotopaxi;
 
+import static br.octahedron.cotopaxi.CotopaxiProperty.ASYNC_TIMEOUT;
+import static br.octahedron.cotopaxi.CotopaxiProperty.CONTROLLERS_EAGER_LOADING;
+import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_CACHE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_PRELOAD;
 import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_RENDER;
 import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
 import static br.octahedron.cotopaxi.inject.DependencyManager.registerDependency;
+import static br.octahedron.cotopaxi.inject.DependencyManager.registerImplementation;
+import static br.octahedron.cotopaxi.inject.Injector.getInstance;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Locale;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -33,12 +40,19 @@ import br.octahedron.cotopaxi.config.ConfigurationLoader;
 import br.octahedron.cotopaxi.config.ConfigurationSyntaxException;
 import br.octahedron.cotopaxi.controller.ControllerDescriptor;
 import br.octahedron.cotopaxi.controller.ControllerExecutor;
+import br.octahedron.cotopaxi.controller.ControllerLimiter;
+import br.octahedron.cotopaxi.controller.ControllerLimiter.Permit;
 import br.octahedron.cotopaxi.controller.ControllerResponse;
+import br.octahedron.cotopaxi.controller.DeferredResponse;
 import br.octahedron.cotopaxi.interceptor.InterceptorManager;
-import br.octahedron.cotopaxi.route.NotFoundExeption;
 import br.octahedron.cotopaxi.route.Router;
+import br.octahedron.cotopaxi.view.render.Preloadable;
+import br.octahedron.cotopaxi.view.render.TemplateException;
 import br.octahedron.cotopaxi.view.render.TemplateRender;
-import br.octahedron.cotopaxi.view.response.TemplateResponse;
+import br.octahedron.cotopaxi.view.response.CachedResponse;
+import br.octahedron.cotopaxi.view.response.StatusResponse;
+import br.octahedron.cotopaxi.view.response.RenderableResponse;
+import br.octahedron.util.LRUCache;
 import br.octahedron.util.Log;
 
 /**
@@ -51,9 +65,15 @@ public class CotopaxiServlet extends HttpServlet {
 	private static final long serialVersionUID = 8958499809792016589L;
 
 	private static final Log log = new Log(CotopaxiServlet.class);
+	private static final ControllerResponse REJECTED = new StatusResponse(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "1");
+	// max number of locales with a cached not found response
+	private static final int NOT_FOUND_CACHE_SIZE = 32;
 	private InterceptorManager interceptor = new InterceptorManager();
 	private Router router = new Router();
+	private ControllerLimiter limiter = new ControllerLimiter();
 	private ControllerExecutor executor;
+	private long asyncTimeout;
+	private LRUCache<Locale, CachedResponse> notFoundCache;
 
 	/*
 	 * (non-Javadoc)
@@ -65,18 +85,42 @@ public class CotopaxiServlet extends HttpServlet {
 		try {
 			log.info("Loading cotopaxi configuration...");
 			Booter booter = new Bootloader.Booter();
-			ConfigurationLoader loader = new ConfigurationLoader(this.router, this.interceptor, booter);
+			ConfigurationLoader loader = new ConfigurationLoader(this.router, this.interceptor, this.limiter, booter);
 			loader.loadConfiguration();
+			// makes the router available to application, e.g., to reload routes
+			registerImplementation(Router.class, this.router);
+			// and the limiter, to access its metrics
+			registerImplementation(ControllerLimiter.class, this.limiter);
 			this.executor = new ControllerExecutor(this.interceptor);
+			this.asyncTimeout = Long.parseLong(getProperty(ASYNC_TIMEOUT));
+			if (Boolean.parseBoolean(getProperty(NOT_FOUND_CACHE))) {
+				this.notFoundCache = new LRUCache<Locale, CachedResponse>(NOT_FOUND_CACHE_SIZE);
+			}
 			log.info("Cotopaxi is ready to serve...");
 			booter.boot();
 			registerDependency(TemplateRender.class.getName(), getProperty(TEMPLATE_RENDER));
+			if (Boolean.parseBoolean(getProperty(TEMPLATE_PRELOAD))) {
+				TemplateRender render = getInstance(TemplateRender.class);
+				if (render instanceof Preloadable) {
+					log.info("Loading templates...");
+					((Preloadable) render).preload();
+				} else {
+					log.warning("The template render %s doesn't support preloading", render.getClass().getName());
+				}
+			}
+			if (Boolean.parseBoolean(getProperty(CONTROLLERS_EAGER_LOADING))) {
+				log.info("Loading controllers...");
+				this.executor.load(this.router.getRoutes());
+			}
 		} catch (FileNotFoundException ex) {
 			log.error("Configuration file not found. Make sure the %s file exists", ConfigurationLoader.CONFIGURATION_FILENAME);
 			throw new ServletException(ex);
 		} catch (ConfigurationSyntaxException ex) {
 			log.error("Error parsing configuration file: Invalid Syntax. Check you configuration file and try again");
 			throw new ServletException(ex);
+		} catch (TemplateException ex) {
+			log.error("Error loading templates: %s", ex.getMessage());
+			throw new ServletException(ex);
 		} catch (Exception ex) {
 			log.error(ex, "Unexpected error loading cotopaxi: %s", ex.getMessage());
 			throw new ServletException(ex);
@@ -97,26 +141,112 @@ public class CotopaxiServlet extends HttpServlet {
 	 */
 	private void deliver(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
 		ControllerResponse controllerResponse = null;
+		Permit permit = ControllerLimiter.UNLIMITED;
+		// if the controller execution started, so its context should be released
+		boolean executed = false;
+		// if the permit and the context were handed to a deferred delivery, which releases them
+		boolean handedOff = false;
 		try {
-			ControllerDescriptor controllerDesc = this.router.route(request);
+			ControllerDescriptor controllerDesc = this.router.lookup(request);
+			if (controllerDesc == null) {
+				this.notFound(request, response);
+				return;
+			}
+			permit = this.limiter.acquire(controllerDesc);
+			if (permit == null) {
+				REJECTED.dispatch(response);
+				return;
+			}
+			executed = true;
 			controllerResponse = this.executor.execute(controllerDesc, request);
-		} catch (NotFoundExeption ex) {
-			controllerResponse = this.executor.execute(request, ex);
+
+			if (controllerResponse instanceof DeferredResponse) {
+				DeferredResponse deferred = (DeferredResponse) controllerResponse;
+				// the deferred response's context is captured, so it's kept after releasing this thread
+				this.executor.release();
+				Object asyncContext = (deferred.isDone()) ? null : AsyncSupport.start(request, this.asyncTimeout);
+				DeferredDelivery delivery = new DeferredDelivery(this.interceptor, this.executor, deferred, request, response, permit,
+						asyncContext);
+				handedOff = true;
+				if (asyncContext != null) {
+					AsyncSupport.listen(asyncContext, delivery);
+					deferred.onComplete(delivery);
+				} else {
+					delivery.await(this.asyncTimeout);
+				}
+			} else {
+				respond(this.interceptor, controllerResponse, request, response);
+			}
+		} finally {
+			if (!handedOff) {
+				try {
+					if (executed) {
+						// even if the controller execution failed, the context is recycled
+						try {
+							this.interceptor.finish();
+						} finally {
+							this.executor.release();
+						}
+					}
+				} finally {
+					if (permit != null) {
+						permit.release();
+					}
+				}
+			}
 		}
+	}
 
+	/**
+	 * Dispatches the not found response. If the not found cache is enabled, the response is
+	 * rendered once per locale and then served from the cache, without executing or rendering
+	 * anything. The cached response is shared by every client, so it's rendered without the
+	 * {@link br.octahedron.cotopaxi.interceptor.TemplateInterceptor}s, which may add request
+	 * specific content, and it isn't cached if it sets cookies or varies by request headers.
+	 */
+	private void notFound(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+		Locale locale = (this.notFoundCache != null) ? request.getLocale() : null;
 		try {
-			if (controllerResponse != null) {
-				if (controllerResponse instanceof TemplateResponse) {
-					this.interceptor.preRender((TemplateResponse) controllerResponse);
+			CachedResponse cached = (locale != null) ? this.notFoundCache.get(locale) : null;
+			if (cached == null) {
+				ControllerResponse controllerResponse = this.executor.notFound(request);
+				if (locale != null) {
+					CachedResponse.Recorder recorder = new CachedResponse.Recorder(response);
+					controllerResponse.dispatch(recorder);
+					cached = recorder.toResponse();
+					if (recorder.isCacheable()) {
+						this.notFoundCache.put(locale, cached);
+					}
+					cached.dispatch(response);
+				} else {
+					respond(this.interceptor, controllerResponse, request, response);
 				}
-				controllerResponse.dispatch(response);
 			} else {
-				log.error("Cannot determine a ControllerResponse for url %s.\nDid you call some \"render\" method?", request.getRequestURI());
-				throw new ServletException("Cannot determine a ControllerResponse for request. Did you call some \"render\" method?");
+				cached.dispatch(response);
 			}
 		} finally {
-			this.interceptor.finish();
+			try {
+				this.interceptor.finish();
+			} finally {
+				this.executor.release();
+			}
 		}
+	}
 
+	/**
+	 * Renders a {@link ControllerResponse}, running the {@link InterceptorManager}'s
+	 * {@link br.octahedron.cotopaxi.interceptor.TemplateInterceptor}s before.
+	 */
+	static void respond(InterceptorManager interceptor, ControllerResponse controllerResponse, HttpServletRequest request,
+			HttpServletResponse response) throws IOException, ServletException {
+		if (controllerResponse != null) {
+			if (controllerResponse instanceof RenderableResponse) {
+				interceptor.preRender((RenderableResponse) controllerResponse);
+			}
+			controllerResponse.dispatch(response);
+		} else {
+			log.error("Cannot determine a ControllerResponse for url %s.\nDid you call some \"render\" method?", request.getRequestURI());
+			throw new ServletException("Cannot determine a ControllerResponse for request. Did you call some \"render\" method?");
+		}
 	}
 }
@@ -0,0 +1,174 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import br.octahedron.cotopaxi.controller.ControllerExecutor;
+import br.octahedron.cotopaxi.controller.ControllerLimiter.Permit;
+import br.octahedron.cotopaxi.controller.ControllerResponse;
+import br.octahedron.cotopaxi.controller.DeferredResponse;
+import br.octahedron.cotopaxi.interceptor.InterceptorManager;
+import br.octahedron.util.Log;
+
+/**
+ * Dispatches a {@link DeferredResponse}, once it's completed, or a SERVICE UNAVAILABLE (503) error
+ * if it times out or the asynchronous request fails. Just the first of these events is handled:
+ * completing the response after it timed out does nothing.
+ * 
+ * The response is dispatched bound to the deferred request's context, at the thread which
+ * completes the response, or which handles the timeout. Then the
+ * {@link br.octahedron.cotopaxi.interceptor.FinalizerInterceptor}s run, the context and the
+ * limiter's permit are released and the asynchronous request, if any, is completed.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class DeferredDelivery implements Runnable, AsyncSupport.Listener {
+
+	private static final Log log = new Log(DeferredDelivery.class);
+
+	private final InterceptorManager interceptor;
+	private final ControllerExecutor executor;
+	private final DeferredResponse deferred;
+	private final HttpServletRequest request;
+	private final HttpServletResponse response;
+	private final Permit permit;
+	private final Object asyncContext;
+	private final AtomicBoolean dispatched = new AtomicBoolean(false);
+
+	/**
+	 * @param asyncContext
+	 *            the request's <code>AsyncContext</code>, or <code>null</code> if the request
+	 *            isn't in asynchronous mode
+	 */
+	public DeferredDelivery(InterceptorManager interceptor, ControllerExecutor executor, DeferredResponse deferred,
+			HttpServletRequest request, HttpServletResponse response, Permit permit, Object asyncContext) {
+		this.interceptor = interceptor;
+		this.executor = executor;
+		this.deferred = deferred;
+		this.request = request;
+		this.response = response;
+		this.permit = permit;
+		this.asyncContext = asyncContext;
+	}
+
+	/**
+	 * Waits the response be completed, at most the given timeout, and dispatches it. It's used at
+	 * the request thread, when the request can't be put in asynchronous mode.
+	 * 
+	 * @param timeout
+	 *            the max time to wait, in milliseconds
+	 */
+	public void await(long timeout) {
+		try {
+			this.deferred.get(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.deferred.isDone()) {
+			this.run();
+		} else {
+			this.onTimeout();
+		}
+	}
+
+	/**
+	 * Dispatches the completed response.
+	 */
+	@Override
+	public void run() {
+		if (this.dispatched.compareAndSet(false, true)) {
+			this.dispatch(this.deferred.getResponse());
+		} else {
+			log.debug("Deferred response for url %s completed after timed out. Ignoring it.", this.request.getRequestURI());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.AsyncSupport.Listener#onTimeout()
+	 */
+	@Override
+	public void onTimeout() {
+		if (this.dispatched.compareAndSet(false, true)) {
+			log.warning("Deferred response for url %s not completed in time. Sending SERVICE UNAVAILABLE error.", this.request.getRequestURI());
+			this.dispatch(null);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.AsyncSupport.Listener#onError(java.lang.Throwable)
+	 */
+	@Override
+	public void onError(Throwable error) {
+		if (this.dispatched.compareAndSet(false, true)) {
+			log.warning(error, "Asynchronous request for url %s failed. Sending SERVICE UNAVAILABLE error.", this.request.getRequestURI());
+			this.dispatch(null);
+		}
+	}
+
+	/**
+	 * Dispatches the given response, or a SERVICE UNAVAILABLE error if it's <code>null</code>,
+	 * and releases everything held by the request.
+	 */
+	private void dispatch(final ControllerResponse controllerResponse) {
+		try {
+			this.executor.runInContext(this.deferred, new Runnable() {
+				@Override
+				public void run() {
+					DeferredDelivery.this.deliver(controllerResponse);
+				}
+			});
+		} finally {
+			try {
+				// a response which never completes still gives its slot back, once it times out
+				this.permit.release();
+			} finally {
+				AsyncSupport.complete(this.asyncContext);
+			}
+		}
+	}
+
+	/**
+	 * Renders the response and runs the
+	 * {@link br.octahedron.cotopaxi.interceptor.FinalizerInterceptor}s. It runs bound to the
+	 * deferred request's context.
+	 */
+	private void deliver(ControllerResponse controllerResponse) {
+		try {
+			if (controllerResponse != null) {
+				CotopaxiServlet.respond(this.interceptor, controllerResponse, this.request, this.response);
+			} else {
+				this.response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			}
+		} catch (Exception ex) {
+			log.error(ex, "Unable to dispatch deferred response for url %s: %s", this.request.getRequestURI(), ex.getMessage());
+		} finally {
+			try {
+				this.interceptor.finish();
+			} finally {
+				this.executor.release(this.deferred);
+			}
+		}
+	}
+}
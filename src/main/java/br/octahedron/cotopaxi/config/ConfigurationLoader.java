@@ -18,12 +18,16 @@ package br.octahedron.cotopaxi.config;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import br.octahedron.cotopaxi.Bootloader.Booter;
 import br.octahedron.cotopaxi.config.ConfigurationParser.Token;
 import br.octahedron.cotopaxi.config.ConfigurationParser.TokenType;
 import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+import br.octahedron.cotopaxi.controller.ControllerLimiter;
 import br.octahedron.cotopaxi.inject.DependencyManager;
 import br.octahedron.cotopaxi.interceptor.InterceptorManager;
 import br.octahedron.cotopaxi.route.Router;
@@ -31,7 +35,12 @@ import br.octahedron.util.FileUtil;
 import br.octahedron.util.Log;
 
 /**
- * Loads the configuration file
+ * Loads the configuration file.
+ * 
+ * The routes found at the configuration file are published to the {@link Router} at once, after
+ * the whole file be parsed. A loader created using {@link #ConfigurationLoader(Router)} only loads
+ * the routes, and replaces the router's current routes: it can be used to reload routes at
+ * runtime (see {@link ConfigurationLoader#reloadRoutes(Router)}).
  * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
@@ -39,22 +48,63 @@ public class ConfigurationLoader {
 
 	private static final Log log = new Log(ConfigurationLoader.class);
 	public static final String CONFIGURATION_FILENAME = "WEB-INF/application.config";
+	private static final EnumSet<TokenType> BLOCKS = EnumSet.of(TokenType.INTERCEPTORS, TokenType.DEPENDENCIES, TokenType.PROPERTIES,
+			TokenType.CONTROLLERS, TokenType.BOOTLOADERS, TokenType.LIMITS);
 	private ConfigurationParser parser;
 	private InterceptorManager interceptor;
 	private Router router;
+	private ControllerLimiter limiter;
 	private Booter booter;
+	private List<ControllerDescriptor> routes = new LinkedList<ControllerDescriptor>();
+	private boolean routesOnly = false;
+
+	/**
+	 * Reloads the routes from configuration file, replacing the given {@link Router} routes. Any
+	 * other configuration block (properties, interceptors, dependencies, bootloaders) is ignored.
+	 * 
+	 * The application's {@link Router} is registered at the {@link DependencyManager}, so it can
+	 * be injected into the application's classes which should trigger the reload.
+	 */
+	public static void reloadRoutes(Router router) throws FileNotFoundException, ConfigurationSyntaxException, ClassNotFoundException,
+			InstantiationException, IllegalAccessException {
+		log.info("Reloading routes from %s", CONFIGURATION_FILENAME);
+		new ConfigurationLoader(router).loadConfiguration();
+	}
+
+	/**
+	 * Creates a loader which only loads routes.
+	 */
+	public ConfigurationLoader(Router router) throws FileNotFoundException {
+		this(router, null, FileUtil.getInputStream(CONFIGURATION_FILENAME));
+		this.routesOnly = true;
+	}
 
 	public ConfigurationLoader(Router router, InterceptorManager interceptor, Booter booter) throws FileNotFoundException {
+		this(router, interceptor, null, booter);
+	}
+
+	/**
+	 * Creates a loader which also loads the controllers' limits into the given
+	 * {@link ControllerLimiter}.
+	 */
+	public ConfigurationLoader(Router router, InterceptorManager interceptor, ControllerLimiter limiter, Booter booter)
+			throws FileNotFoundException {
 		this.parser = new ConfigurationParser(FileUtil.getInputStream(CONFIGURATION_FILENAME));
 		this.router = router;
 		this.interceptor = interceptor;
+		this.limiter = limiter;
 		this.booter = booter;
 	}
 
 	protected ConfigurationLoader(Router router, InterceptorManager interceptor, InputStream in) {
+		this(router, interceptor, null, in);
+	}
+
+	protected ConfigurationLoader(Router router, InterceptorManager interceptor, ControllerLimiter limiter, InputStream in) {
 		this.parser = new ConfigurationParser(in);
 		this.router = router;
 		this.interceptor = interceptor;
+		this.limiter = limiter;
 	}
 
 	/**
@@ -69,10 +119,19 @@ public class ConfigurationLoader {
 		} catch (NoSuchElementException ex) {
 			log.info("End of file reached.");
 		}
+		if (this.routesOnly) {
+			this.router.replaceRoutes(this.routes);
+		} else {
+			this.router.addRoutes(this.routes);
+		}
 	}
 
 	private void process(Token tk) throws ConfigurationSyntaxException, ClassNotFoundException, InstantiationException, IllegalAccessException {
 		try {
+			if (this.routesOnly && tk.getTokenType() != TokenType.CONTROLLERS && BLOCKS.contains(tk.getTokenType())) {
+				log.debug("%s block skipped", tk.getTokenType());
+				this.skipBlock();
+			}
 			switch (tk.getTokenType()) {
 			case CONTROLLERS:
 				log.debug("%s block found", tk.getTokenType());
@@ -94,6 +153,10 @@ public class ConfigurationLoader {
 				log.debug("%s block found", tk.getTokenType());
 				this.processBootloaders();
 				break;
+			case LIMITS:
+				log.debug("%s block found", tk.getTokenType());
+				this.processLimits();
+				break;
 			default:
 				throw new ConfigurationSyntaxException(tk);
 			}
@@ -102,6 +165,15 @@ public class ConfigurationLoader {
 		}
 	}
 
+	private void skipBlock() throws UnexpectedTokenException {
+		do {
+			Token tk = parser.nextToken();
+			if (BLOCKS.contains(tk.getTokenType())) {
+				throw new UnexpectedTokenException(tk);
+			}
+		} while (true);
+	}
+
 	private void processDependencies() throws UnexpectedTokenException, ClassNotFoundException {
 		do {
 			String ifClass = this.getContent(TokenType.CLASS);
@@ -136,6 +208,32 @@ public class ConfigurationLoader {
 		} while (true);
 	}
 
+	private void processLimits() throws UnexpectedTokenException, ConfigurationSyntaxException {
+		do {
+			String controllerClass = this.getContent(TokenType.CLASS);
+			int maxConcurrent = this.getInt();
+			int maxQueue = this.getInt();
+			if (this.limiter != null) {
+				log.info("Configuration limit found: %s -> %d %d", controllerClass, maxConcurrent, maxQueue);
+				this.limiter.setLimit(controllerClass, maxConcurrent, maxQueue);
+			} else {
+				log.warning("Configuration limit for %s ignored: there's no limiter", controllerClass);
+			}
+		} while (true);
+	}
+
+	private int getInt() throws UnexpectedTokenException, ConfigurationSyntaxException {
+		Token tk = parser.nextToken();
+		if (tk.getTokenType() == TokenType.STRING) {
+			try {
+				return Integer.parseInt(tk.getContent());
+			} catch (NumberFormatException ex) {
+				throw new ConfigurationSyntaxException(tk);
+			}
+		}
+		throw new UnexpectedTokenException(tk);
+	}
+
 	private void processControllers(Token tk) throws UnexpectedTokenException {
 		if (tk.getTokenType() == TokenType.CLASS) {
 			try {
@@ -155,7 +253,7 @@ public class ConfigurationLoader {
 			String method = this.getContent(TokenType.STRING);
 			String controllerName = this.getContent(TokenType.STRING);
 			log.info("Adding controller descriptor %s - %s - %s - %s", controllerClass, url, method, controllerName);
-			this.router.addRoute(new ControllerDescriptor(url, method, controllerName, controllerClass));
+			this.routes.add(new ControllerDescriptor(url, method, controllerName, controllerClass));
 		} while (true);
 	}
 
@@ -28,7 +28,7 @@ import java.util.regex.Pattern;
 public class ConfigurationParser {
 
 	public enum TokenType {
-		INTERCEPTORS("interceptors"), DEPENDENCIES("dependencies"), PROPERTIES("properties"), CONTROLLERS("controllers"), BOOTLOADERS("bootloaders"), URL(
+		INTERCEPTORS("interceptors"), DEPENDENCIES("dependencies"), PROPERTIES("properties"), CONTROLLERS("controllers"), BOOTLOADERS("bootloaders"), LIMITS("limits"), URL(
 				"^((/[a-zA-Z_0-9]+)*(/\\{[a-zA-Z_0-9]+\\})*(/[a-zA-Z_0-9]+)*)+/?$"), PROPERTY("(([A-Z]+[0-9]*)+_?([A-Z]+[0-9]*)+)*"), CLASS("(\\w+\\.)+\\w+"), STRING(
 				"\\S+");
 
@@ -22,15 +22,16 @@ import static br.octahedron.cotopaxi.CotopaxiProperty.INVALID_TEMPLATE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_TEMPLATE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
 import static br.octahedron.cotopaxi.controller.ControllerContext.getContext;
+import static br.octahedron.cotopaxi.inject.Injector.getInstance;
 
-import java.io.StringWriter;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.http.HttpSession;
 
-import br.octahedron.cotopaxi.view.render.VelocityTemplateRender;
+import br.octahedron.cotopaxi.view.MemoryWriter;
+import br.octahedron.cotopaxi.view.render.TemplateRender;
 import br.octahedron.cotopaxi.view.response.JSONResponse;
 import br.octahedron.cotopaxi.view.response.RedirectResponse;
 import br.octahedron.cotopaxi.view.response.SimpleTextResponse;
@@ -277,6 +278,25 @@ public abstract class Controller extends InputController {
 		this.render(getProperty(INVALID_TEMPLATE), 400);
 	}
 
+	/**
+	 * Caches the page rendered by this controller, for the given time. While the page is cached,
+	 * the responses rendered with the same key, template and locale are written from cache,
+	 * without rendering the template. The key should identify the output, e.g., it shouldn't be
+	 * used for pages which depend on the current user, unless the user is part of the key.
+	 * 
+	 * @param key
+	 *            the cache key
+	 * @param ttl
+	 *            for how long the page is cached, in seconds
+	 */
+	protected final void cache(String key, int ttl) {
+		getContext().setCache(key, ttl);
+		ControllerResponse response = getContext().getControllerResponse();
+		if (response instanceof TemplateResponse) {
+			((TemplateResponse) response).setCache(key, ttl);
+		}
+	}
+
 	/**
 	 * Renders the given template. It will use the objects set using the
 	 * {@link Controller#out(String, Object)} to render the template. After render, the code
@@ -358,8 +378,7 @@ public abstract class Controller extends InputController {
 	 */
 	protected final void forward(String actionName) {
 		ControllerDescriptor cont = this.controllerDescriptor();
-		ControllerDescriptor desc = new ControllerDescriptor(cont.getUrl(), cont.getHttpMethod(), actionName, cont.getControllerClass());
-		getContext().forward(desc);
+		getContext().forward(cont.forwardTo(cont.getControllerClass(), actionName));
 	}
 
 	/**
@@ -377,16 +396,59 @@ public abstract class Controller extends InputController {
 	 *            the simple action name
 	 */
 	protected final void forward(Class<? extends Controller> controller, String actionName) {
-		ControllerDescriptor cont = this.controllerDescriptor();
-		ControllerDescriptor desc = new ControllerDescriptor(cont.getUrl(), this.controllerDescriptor().getHttpMethod(), actionName,
-				controller.getName());
-		getContext().forward(desc);
+		getContext().forward(this.controllerDescriptor().forwardTo(controller.getName(), actionName));
 	}
 
+	/**
+	 * Defers this request's response, releasing the request thread while the response is
+	 * produced, e.g., by a task running at an executor. The response is defined when the
+	 * {@link DeferredResponse} is completed: calling a render method (e.g.,
+	 * {@link Controller#render(String, int)}) from a task wrapped by
+	 * {@link InputController#inContext(Runnable)} completes it.
+	 * 
+	 * E.g.:
+	 * 
+	 * <pre>
+	 * public void getReport() {
+	 * 	defer();
+	 * 	executor.submit(inContext(new Runnable() {
+	 * 		public void run() {
+	 * 			out(&quot;report&quot;, slowService.report());
+	 * 			success(&quot;report.vm&quot;);
+	 * 		}
+	 * 	}));
+	 * }
+	 * </pre>
+	 * 
+	 * @return the {@link DeferredResponse}
+	 * @throws IllegalStateException
+	 *             if the response is already defined
+	 */
+	protected final DeferredResponse defer() {
+		return ControllerContext.defer();
+	}
+
+	/**
+	 * Renders the given template to a String, using the current output. It uses the application's
+	 * {@link TemplateRender}, so it's cheap enough to be used to render, e.g., emails' bodies.
+	 * 
+	 * @param templatePath
+	 *            The template to be used, relative to the TEMPLATE_FOLDER.
+	 * @return the rendered template
+	 */
 	public String renderToMemory(String templatePath) {
-		VelocityTemplateRender template = new VelocityTemplateRender();
-		StringWriter writer = new StringWriter();
-		template.render(templatePath, output(), writer);
-		return writer.getBuffer().toString();
+		TemplateRender render;
+		try {
+			render = getInstance(TemplateRender.class);
+		} catch (InstantiationException ex) {
+			throw new IllegalStateException("Unable to get the TemplateRender", ex);
+		}
+		MemoryWriter writer = MemoryWriter.open();
+		try {
+			render.render(templatePath, output(), writer);
+			return writer.toString();
+		} finally {
+			writer.release();
+		}
 	}
 }
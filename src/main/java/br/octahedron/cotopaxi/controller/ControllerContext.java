@@ -19,14 +19,28 @@ package br.octahedron.cotopaxi.controller;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.servlet.http.HttpServletRequest;
 
+import br.octahedron.cotopaxi.inject.RequestScope;
+import br.octahedron.util.ArrayMap;
+
 /**
  * Holds the current context for a {@link Controller}. It means that this class holds all necessary
  * information for a {@link Controller} flow, including the current request and response, the output
  * value, and others.
  * 
+ * Contexts are recycled: each thread keeps its context, which is reset for each request, instead
+ * of allocating a new one.
+ * 
+ * The context is bound to the thread handling the request. To use it from other threads (e.g., to
+ * fan out work to an executor), the tasks should be wrapped using
+ * {@link ControllerContext#wrap(Runnable)} or {@link ControllerContext#wrap(Callable)}, which
+ * carries the current context and binds it, and its {@link RequestScope}, while the task runs. A
+ * captured context is never recycled, so it remains valid after the request ends, but it isn't
+ * thread-safe: concurrent tasks shouldn't change the same context.
+ * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
 public final class ControllerContext {
@@ -36,15 +50,98 @@ public final class ControllerContext {
 	private static final ThreadLocal<ControllerContext> threadContexts = new ThreadLocal<ControllerContext>();
 
 	protected static ControllerContext getContext() {
-		return threadContexts.get();
+		ControllerContext context = threadContexts.get();
+		return (context != null && context.active) ? context : null;
 	}
 
 	protected static void setContext(HttpServletRequest request, ControllerDescriptor controllerDesc) {
-		threadContexts.set(new ControllerContext(request, controllerDesc));
+		clearContext();
+		ControllerContext context = threadContexts.get();
+		if (context == null) {
+			context = new ControllerContext();
+			threadContexts.set(context);
+		}
+		context.reset(request, controllerDesc);
 	}
 
+	/**
+	 * Clears the current context, closing its {@link RequestScope}. The context is kept to be
+	 * reused by the next request, unless it was captured by
+	 * {@link ControllerContext#wrap(Runnable)}: a captured context is just unbound from the current
+	 * thread, and its request scoped instances are left to be garbage collected.
+	 */
 	protected static void clearContext() {
-		threadContexts.remove();
+		ControllerContext context = threadContexts.get();
+		if (context != null) {
+			if (context.captured) {
+				threadContexts.remove();
+				if (RequestScope.current() == context.scope) {
+					RequestScope.exchange(null);
+				}
+			} else if (context.active) {
+				context.release();
+			}
+		}
+	}
+
+	/**
+	 * Wraps the given task to run using the current context. The returned task binds the current
+	 * context, and its {@link RequestScope}, to the thread running it, and restores the thread's
+	 * previous context when the task ends.
+	 * 
+	 * @throws IllegalStateException
+	 *             if there's no current context
+	 */
+	public static Runnable wrap(Runnable task) {
+		return capture().bind(task);
+	}
+
+	/**
+	 * Wraps the given task to run using the current context.
+	 * 
+	 * @see ControllerContext#wrap(Runnable)
+	 * @throws IllegalStateException
+	 *             if there's no current context
+	 */
+	public static <V> Callable<V> wrap(final Callable<V> task) {
+		final ControllerContext context = capture();
+		return new Callable<V>() {
+			@Override
+			public V call() throws Exception {
+				ControllerContext previous = threadContexts.get();
+				RequestScope previousScope = context.attach();
+				try {
+					return task.call();
+				} finally {
+					detach(previous, previousScope);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Captures the current context, so it isn't recycled.
+	 */
+	private static ControllerContext capture() {
+		ControllerContext context = getContext();
+		if (context == null) {
+			throw new IllegalStateException("There's no context bound to current thread");
+		}
+		context.captured = true;
+		return context;
+	}
+
+	/**
+	 * Defers the current context response. The context is captured, so it remains valid until the
+	 * {@link DeferredResponse} be completed.
+	 * 
+	 * @see Controller#defer()
+	 */
+	static DeferredResponse defer() {
+		ControllerContext context = capture();
+		DeferredResponse deferred = new DeferredResponse(context);
+		context.setControllerResponse(deferred);
+		return deferred;
 	}
 
 	// internal
@@ -56,10 +153,98 @@ public final class ControllerContext {
 	private ControllerDescriptor controllerDesc;
 	private Locale locale;
 	private ControllerDescriptor forward = null;
+	private final RequestScope scope = new RequestScope();
+	private boolean active = false;
+	private boolean captured = false;
+	private String cacheKey = null;
+	private int cacheTtl = 0;
+
+	private ControllerContext() {
+	}
 
-	private ControllerContext(HttpServletRequest request, ControllerDescriptor controllerDesc) {
+	/**
+	 * Resets this context to handle the given request.
+	 */
+	private void reset(HttpServletRequest request, ControllerDescriptor controllerDesc) {
 		this.request = request;
 		this.controllerDesc = controllerDesc;
+		this.scope.bind();
+		this.active = true;
+	}
+
+	/**
+	 * Wraps the given task to run using this context, which should be captured.
+	 * 
+	 * @see ControllerContext#wrap(Runnable)
+	 */
+	Runnable bind(final Runnable task) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				ControllerContext previous = threadContexts.get();
+				RequestScope previousScope = ControllerContext.this.attach();
+				try {
+					task.run();
+				} finally {
+					detach(previous, previousScope);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Binds this context, and its scope, to the current thread.
+	 * 
+	 * @return the scope previously bound to the current thread, if any
+	 */
+	private RequestScope attach() {
+		threadContexts.set(this);
+		return RequestScope.exchange(this.scope);
+	}
+
+	/**
+	 * Restores the given context and scope to the current thread.
+	 */
+	private static void detach(ControllerContext previous, RequestScope previousScope) {
+		RequestScope.exchange(previousScope);
+		if (previous != null) {
+			threadContexts.set(previous);
+		} else {
+			threadContexts.remove();
+		}
+	}
+
+	/**
+	 * Closes a captured context, once its deferred response was completed and dispatched. It closes its
+	 * scope, but doesn't clear its state, since it's never reused.
+	 */
+	void close() {
+		this.active = false;
+		this.scope.close();
+	}
+
+	/**
+	 * Releases this context: closes its scope and clears its state, keeping the maps to be reused.
+	 */
+	private void release() {
+		this.active = false;
+		this.scope.close();
+		this.request = null;
+		this.controllerDesc = null;
+		this.controllerResp = null;
+		this.forward = null;
+		this.locale = null;
+		this.cacheKey = null;
+		this.cacheTtl = 0;
+		if (this.cookies != null) {
+			this.cookies.clear();
+		}
+		if (this.headers != null) {
+			this.headers.clear();
+		}
+		if (this.output != null) {
+			this.output.clear();
+		}
 	}
 
 	// internal methods
@@ -75,7 +260,9 @@ public final class ControllerContext {
 	 * Sets the controller response for this context.
 	 */
 	protected void setControllerResponse(ControllerResponse response) {
-		if (!this.isAnswered() && !this.forwarded()) {
+		if (this.isDeferred()) {
+			((DeferredResponse) this.controllerResp).complete(response);
+		} else if (!this.isAnswered() && !this.forwarded()) {
 			this.controllerResp = response;
 		} else {
 			throw new IllegalStateException("Response already defined");
@@ -94,7 +281,7 @@ public final class ControllerContext {
 	 */
 	public Map<String, String> getHeaders() {
 		if (this.headers == null) {
-			this.headers = new HashMap<String, String>();
+			this.headers = new ArrayMap<String, String>();
 		}
 		return this.headers;
 	}
@@ -104,7 +291,7 @@ public final class ControllerContext {
 	 */
 	public Map<String, String> getCookies() {
 		if (this.cookies == null) {
-			this.cookies = new HashMap<String, String>();
+			this.cookies = new ArrayMap<String, String>();
 		}
 		return this.cookies;
 	}
@@ -120,10 +307,18 @@ public final class ControllerContext {
 	}
 
 	/**
-	 * @return <code>true</code> if request is already answered, <code>false</code> if not.
+	 * @return <code>true</code> if request is already answered, <code>false</code> if not. A
+	 *         request with a pending {@link DeferredResponse} isn't answered yet.
 	 */
 	public boolean isAnswered() {
-		return this.controllerResp != null;
+		return this.controllerResp != null && !this.isDeferred();
+	}
+
+	/**
+	 * @return <code>true</code> if this context response is a pending {@link DeferredResponse}
+	 */
+	private boolean isDeferred() {
+		return this.controllerResp instanceof DeferredResponse && !((DeferredResponse) this.controllerResp).isDone();
 	}
 
 	/**
@@ -148,6 +343,31 @@ public final class ControllerContext {
 		this.locale = locale;
 	}
 
+	/**
+	 * Sets the key and TTL the rendered page should be cached with.
+	 * 
+	 * @see Controller#cache(String, int)
+	 */
+	public void setCache(String key, int ttl) {
+		this.cacheKey = key;
+		this.cacheTtl = ttl;
+	}
+
+	/**
+	 * @return the key the rendered page should be cached with, or <code>null</code> if it
+	 *         shouldn't be cached
+	 */
+	public String getCacheKey() {
+		return this.cacheKey;
+	}
+
+	/**
+	 * @return for how long the rendered page should be cached, in seconds
+	 */
+	public int getCacheTtl() {
+		return this.cacheTtl;
+	}
+
 	/**
 	 * Checks if this controller was forwarded
 	 * 
@@ -164,7 +384,9 @@ public final class ControllerContext {
 	 *            the {@link ControllerDescriptor} which this controller will be forwarded
 	 */
 	public void forward(ControllerDescriptor forwardDescriptor) {
-		if (!this.isAnswered() && !this.forwarded()) {
+		if (this.isDeferred()) {
+			throw new IllegalStateException("A deferred response can't be forwarded");
+		} else if (!this.isAnswered() && !this.forwarded()) {
 			this.forward = forwardDescriptor;
 		} else {
 			throw new IllegalStateException("Response already defined");
@@ -16,6 +16,9 @@
  */
 package br.octahedron.cotopaxi.controller;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Describes a Controller. It contains information about the controller url/httpMethod, the
  * controller class, this controller name.
@@ -29,6 +32,10 @@ public class ControllerDescriptor {
 	private String httpMethod;
 	private String url;
 	private String fullname;
+	// the resolved action, set by the ControllerExecutor
+	private volatile ControllerInvoker invoker;
+	// the forward targets, by controller class and action name
+	private volatile ConcurrentMap<String, ConcurrentMap<String, ControllerDescriptor>> forwards;
 	
 	public ControllerDescriptor(String url, String httpMethod, String controllerName, String controllerClass) {
 		this.url = url.toLowerCase();
@@ -74,6 +81,59 @@ public class ControllerDescriptor {
 		return this.fullname;
 	}
 
+	/**
+	 * Gets the descriptor to forward this controller to the given action, at the given controller
+	 * class. The forward targets are cached, so the same descriptor, and its resolved
+	 * {@link ControllerInvoker}, is used by every forward from this controller to the given action.
+	 * 
+	 * @param controllerClass
+	 *            the target controller class
+	 * @param actionName
+	 *            the target simple action name
+	 * @return the target {@link ControllerDescriptor}, with the same url and http method of this
+	 *         descriptor
+	 */
+	ControllerDescriptor forwardTo(String controllerClass, String actionName) {
+		ConcurrentMap<String, ConcurrentMap<String, ControllerDescriptor>> table = this.forwards;
+		if (table == null) {
+			// concurrent initializations only lose some cached targets
+			table = new ConcurrentHashMap<String, ConcurrentMap<String, ControllerDescriptor>>(4);
+			this.forwards = table;
+		}
+		ConcurrentMap<String, ControllerDescriptor> actions = table.get(controllerClass);
+		if (actions == null) {
+			actions = new ConcurrentHashMap<String, ControllerDescriptor>(4);
+			ConcurrentMap<String, ControllerDescriptor> current = table.putIfAbsent(controllerClass, actions);
+			if (current != null) {
+				actions = current;
+			}
+		}
+		ControllerDescriptor target = actions.get(actionName);
+		if (target == null) {
+			target = new ControllerDescriptor(this.url, this.httpMethod, actionName, controllerClass);
+			ControllerDescriptor current = actions.putIfAbsent(actionName, target);
+			if (current != null) {
+				target = current;
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * @return the resolved {@link ControllerInvoker}, or <code>null</code> if not resolved yet
+	 */
+	ControllerInvoker getInvoker() {
+		return this.invoker;
+	}
+
+	/**
+	 * @param invoker
+	 *            the resolved {@link ControllerInvoker} for this controller
+	 */
+	void setInvoker(ControllerInvoker invoker) {
+		this.invoker = invoker;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -18,17 +18,20 @@ package br.octahedron.cotopaxi.controller;
 
 import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_PROPERTY;
 import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_TEMPLATE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.FORWARD_MAX_DEPTH;
 import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_TEMPLATE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
 import static br.octahedron.cotopaxi.controller.ControllerContext.clearContext;
 import static br.octahedron.cotopaxi.controller.ControllerContext.getContext;
 import static br.octahedron.cotopaxi.controller.ControllerContext.setContext;
-import static br.octahedron.cotopaxi.inject.Injector.getInstance;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -36,7 +39,6 @@ import br.octahedron.cotopaxi.interceptor.InterceptorManager;
 import br.octahedron.cotopaxi.route.NotFoundExeption;
 import br.octahedron.cotopaxi.view.response.TemplateResponse;
 import br.octahedron.util.Log;
-import br.octahedron.util.ReflectionUtil;
 
 /**
  * This class is responsible by the controllers' execution and by gets the
@@ -49,12 +51,53 @@ import br.octahedron.util.ReflectionUtil;
 public class ControllerExecutor {
 
 	private static final Log log = new Log(ControllerExecutor.class);
+	// the descriptor bound to the context of requests without controller
+	private static final ControllerDescriptor NOT_FOUND = new ControllerDescriptor("*", "*", "error", "NotFound");
 
-	private Map<Integer, Method> methodsCache = new HashMap<Integer, Method>();
+	// invokers for descriptors created at runtime, which don't hold its invoker
+	private Map<ControllerDescriptor, ControllerInvoker> invokers = new ConcurrentHashMap<ControllerDescriptor, ControllerInvoker>();
 	private InterceptorManager interceptor;
+	private final int maxForwardDepth;
+	private final AtomicLong forwards = new AtomicLong();
 
 	public ControllerExecutor(InterceptorManager interceptor) {
 		this.interceptor = interceptor;
+		this.maxForwardDepth = Integer.parseInt(getProperty(FORWARD_MAX_DEPTH));
+	}
+
+	/**
+	 * @return the number of forwards executed
+	 */
+	public long getForwards() {
+		return this.forwards.get();
+	}
+
+	/**
+	 * Loads the given controllers: resolves its classes and actions, and prepares the interceptors
+	 * for each action. It's used to load controllers at startup, instead of at the first request
+	 * for each controller.
+	 * 
+	 * @param controllers
+	 *            the controllers to be loaded
+	 * @throws ControllerException
+	 *             if some controller class or action can't be loaded. Every controller is tried
+	 *             anyway, and each failure is logged.
+	 */
+	public void load(Collection<ControllerDescriptor> controllers) throws ControllerException {
+		int failures = 0;
+		for (ControllerDescriptor controllerDesc : controllers) {
+			try {
+				ControllerInvoker invoker = this.getInvoker(controllerDesc);
+				this.interceptor.prepare(invoker.getMethod());
+			} catch (Exception ex) {
+				log.error(ex, "Unable to load controller %s", controllerDesc);
+				failures++;
+			}
+		}
+		if (failures > 0) {
+			throw new ControllerException(String.format("Unable to load %d of %d controllers", failures, controllers.size()));
+		}
+		log.info("%d controllers loaded", controllers.size());
 	}
 
 	/**
@@ -66,6 +109,25 @@ public class ControllerExecutor {
 	 */
 	public ControllerResponse execute(HttpServletRequest request, NotFoundExeption nfex) {
 		log.warning("Cannot found a controller for url %s - %s.", request.getRequestURI(), request.getMethod());
+		return this.notFound(request, nfex);
+	}
+
+	/**
+	 * Generates the response for a request which has no controller, as
+	 * {@link ControllerExecutor#execute(HttpServletRequest, NotFoundExeption)} does, but without
+	 * an exception. Not found requests are usually caused by the clients, and may come in floods,
+	 * so it's kept cheap: it logs them just at debug level, the context is bound to a shared
+	 * descriptor and the not found template gets no error object.
+	 * 
+	 * @return A {@link ControllerResponse} for the given {@link HttpServletRequest}
+	 */
+	public ControllerResponse notFound(HttpServletRequest request) {
+		log.debug("Cannot found a controller for url %s - %s.", request.getRequestURI(), request.getMethod());
+		setContext(request, NOT_FOUND);
+		return new TemplateResponse(getProperty(NOT_FOUND_TEMPLATE), 404, new HashMap<String, Object>(), request.getLocale());
+	}
+
+	private ControllerResponse notFound(HttpServletRequest request, NotFoundExeption nfex) {
 		setContext(request, new ControllerDescriptor(nfex.getUrl(), request.getMethod(), "error", "NotFound"));
 		Map<String, Object> output = new HashMap<String, Object>();
 		output.put(getProperty(ERROR_PROPERTY), nfex);
@@ -88,35 +150,42 @@ public class ControllerExecutor {
 		return process(controllerDesc, request);
 	}
 
+	/**
+	 * Executes the given controller, and the controllers it forwards to, at most
+	 * {@link br.octahedron.cotopaxi.CotopaxiProperty#FORWARD_MAX_DEPTH} forwards.
+	 */
 	public ControllerResponse process(ControllerDescriptor controllerDesc, HttpServletRequest request) {
 		try {
 			ControllerContext context = getContext();
-			// controller isn't answered
-			if (context.isAnswered()) {
-				return context.getControllerResponse();
-			} else {
+			int depth = 0;
+			boolean execute = !context.isAnswered();
+			while (execute) {
 				// load controller and fix context
-				Controller controller = this.loadController(controllerDesc);
-				Method method = this.getMethod(controllerDesc, controller);
+				ControllerInvoker invoker = this.getInvoker(controllerDesc);
+				Method method = invoker.getMethod();
 				this.interceptor.execute(method, context);
 				// execute controller
 				if (!context.isAnswered() && !context.forwarded()) {
-					log.debug("Executing controller %s - %s", controller.getClass().getName(), method.getName());
-					ReflectionUtil.invoke(controller, method);
+					log.debug("Executing controller %s - %s", controllerDesc.getControllerClass(), method.getName());
+					invoker.invoke();
 				} else {
-					log.debug("Controller %s - %s already answered, controller NOT executed!", controller.getClass().getName(), method.getName());
+					log.debug("Controller %s - %s already answered, controller NOT executed!", controllerDesc.getControllerClass(), method.getName());
 				}
-				if(context.forwarded()) {
-					return this.process(context.forward(),request); 
-				} else {
-					return context.getControllerResponse();
+				execute = context.forwarded();
+				if (execute) {
+					if (++depth > this.maxForwardDepth) {
+						log.warning("Max forward depth (%d) exceeded for %s", this.maxForwardDepth, request.getRequestURI());
+						return this.errorResponse(request, new ControllerException(String.format("Max forward depth (%d) exceeded at %s",
+								this.maxForwardDepth, controllerDesc)));
+					}
+					this.forwards.incrementAndGet();
+					controllerDesc = context.forward();
 				}
 			}
+			return context.getControllerResponse();
 		} catch (InvocationTargetException ex) {
 			log.warning(ex, "Unexpected error executing controller for %s. Message: %s", request.getRequestURI(), ex.getMessage());
-			Map<String, Object> output = new HashMap<String, Object>();
-			output.put(getProperty(ERROR_PROPERTY), ex);
-			return new TemplateResponse(getProperty(ERROR_TEMPLATE), 500, output, request.getLocale());
+			return this.errorResponse(request, ex);
 		} catch (Exception ex) {
 			/*
 			 * Here means an access error to controller. It can be cause if controller method
@@ -131,26 +200,59 @@ public class ControllerExecutor {
 	}
 
 	/**
-	 * Gets this controller method.
+	 * Creates the SERVER ERROR (500) response for the given error.
 	 */
-	private Method getMethod(ControllerDescriptor controllerDesc, Controller controller) throws SecurityException, NoSuchMethodException {
-		int hash = controllerDesc.hashCode();
-		if (this.methodsCache.containsKey(hash)) {
-			log.debug("Method founded at cache table. Hash: %d", hash);
-			return this.methodsCache.get(hash);
-		} else {
-			String method = controllerDesc.getFullControllerName();
-			Method result = ReflectionUtil.getMethod(controller.getClass(), method);
-			this.methodsCache.put(hash, result);
-			return result;
-		}
+	private ControllerResponse errorResponse(HttpServletRequest request, Exception ex) {
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put(getProperty(ERROR_PROPERTY), ex);
+		return new TemplateResponse(getProperty(ERROR_TEMPLATE), 500, output, request.getLocale());
+	}
 
+	/**
+	 * Releases the current request's context. It closes the request scope, returning the
+	 * {@link br.octahedron.cotopaxi.inject.Scope#POOLED} instances to its pools, so it should be
+	 * called after the {@link br.octahedron.cotopaxi.interceptor.FinalizerInterceptor}s run.
+	 */
+	public void release() {
+		clearContext();
 	}
 
 	/**
-	 * Loads the controller instance
+	 * Releases the context of the given {@link DeferredResponse}, once it was dispatched or timed
+	 * out. Its scope is closed when the response is completed too.
+	 * 
+	 * @see ControllerExecutor#release()
+	 * @see DeferredResponse#release()
 	 */
-	private Controller loadController(ControllerDescriptor controllerDesc) throws InstantiationException, ClassNotFoundException {
-		return (Controller) getInstance(ReflectionUtil.getClass(controllerDesc.getControllerClass()));
+	public void release(DeferredResponse deferred) {
+		deferred.release();
+	}
+
+	/**
+	 * Runs the given task at the current thread, bound to the context of the given
+	 * {@link DeferredResponse}, as the tasks wrapped by {@link ControllerContext#wrap(Runnable)}
+	 * do. It's used to dispatch a deferred response at the thread which completes it, or which
+	 * handles its timeout.
+	 */
+	public void runInContext(DeferredResponse deferred, Runnable task) {
+		deferred.getContext().bind(task).run();
+	}
+
+	/**
+	 * Gets the {@link ControllerInvoker} for the given descriptor, resolving it if necessary.
+	 */
+	private ControllerInvoker getInvoker(ControllerDescriptor controllerDesc) throws InstantiationException, ClassNotFoundException,
+			SecurityException, NoSuchMethodException {
+		ControllerInvoker invoker = controllerDesc.getInvoker();
+		if (invoker == null) {
+			invoker = this.invokers.get(controllerDesc);
+			if (invoker == null) {
+				log.debug("Resolving controller %s", controllerDesc);
+				invoker = ControllerInvoker.resolve(controllerDesc);
+				this.invokers.put(controllerDesc, invoker);
+			}
+			controllerDesc.setInvoker(invoker);
+		}
+		return invoker;
 	}
 }
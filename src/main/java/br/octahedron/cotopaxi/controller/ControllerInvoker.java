@@ -0,0 +1,77 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static br.octahedron.cotopaxi.inject.Injector.getInstance;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import br.octahedron.util.ReflectionUtil;
+
+/**
+ * A resolved controller action: the {@link Controller} instance and its action {@link Method}.
+ * 
+ * Invokers are resolved once for each {@link ControllerDescriptor} and kept by the descriptor
+ * itself, so executing a controller is a direct call, without any lookup.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class ControllerInvoker {
+
+	private Controller controller;
+	private Method method;
+
+	private ControllerInvoker(Controller controller, Method method) {
+		this.controller = controller;
+		this.method = method;
+		// skips the access checks on each invocation
+		this.method.setAccessible(true);
+	}
+
+	/**
+	 * Resolves the invoker for the given {@link ControllerDescriptor}: loads the controller and
+	 * looks up its action method.
+	 */
+	static ControllerInvoker resolve(ControllerDescriptor controllerDesc) throws InstantiationException, ClassNotFoundException,
+			SecurityException, NoSuchMethodException {
+		Controller controller = (Controller) getInstance(ReflectionUtil.getClass(controllerDesc.getControllerClass()));
+		Method method = ReflectionUtil.getMethod(controller.getClass(), controllerDesc.getFullControllerName());
+		return new ControllerInvoker(controller, method);
+	}
+
+	/**
+	 * @return the {@link Controller} instance
+	 */
+	Controller getController() {
+		return this.controller;
+	}
+
+	/**
+	 * @return the controller action {@link Method}
+	 */
+	Method getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * Invokes the controller action.
+	 */
+	void invoke() throws IllegalAccessException, InvocationTargetException {
+		this.method.invoke(this.controller, (Object[]) null);
+	}
+}
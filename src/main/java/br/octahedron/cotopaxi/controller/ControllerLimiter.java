@@ -0,0 +1,278 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.DISPATCH_MAX_CONCURRENT;
+import static br.octahedron.cotopaxi.CotopaxiProperty.DISPATCH_MAX_QUEUE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.DISPATCH_QUEUE_TIMEOUT;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.octahedron.util.Log;
+
+/**
+ * Limits the number of requests concurrently handled by each controller class, so an overloaded
+ * controller can't starve the rest of the application.
+ * 
+ * For each limited controller class, at most <i>maxConcurrent</i> requests are handled at the same
+ * time, and at most <i>maxQueue</i> requests wait for a slot. Requests beyond that, or waiting for
+ * longer than the {@link br.octahedron.cotopaxi.CotopaxiProperty#DISPATCH_QUEUE_TIMEOUT}, are
+ * rejected, and should be answered with a SERVICE UNAVAILABLE (503) response.
+ * 
+ * Limits are defined per controller class, at the <code>limits</code> configuration block, or for
+ * all controllers, using the {@link br.octahedron.cotopaxi.CotopaxiProperty#DISPATCH_MAX_CONCURRENT}
+ * and {@link br.octahedron.cotopaxi.CotopaxiProperty#DISPATCH_MAX_QUEUE} properties. By default,
+ * there's no limit.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ControllerLimiter {
+
+	private static final Log log = new Log(ControllerLimiter.class);
+
+	/**
+	 * The {@link Permit} for not limited controllers.
+	 */
+	public static final Permit UNLIMITED = new Permit(null);
+
+	private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+	// the controllers classes using the default limit, or without limit
+	private final ConcurrentMap<String, Limit> defaults = new ConcurrentHashMap<String, Limit>();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Sets the limit for the given controller class.
+	 * 
+	 * @param controllerClass
+	 *            the controller's class name
+	 * @param maxConcurrent
+	 *            the max number of requests concurrently handled
+	 * @param maxQueue
+	 *            the max number of requests waiting
+	 */
+	public void setLimit(String controllerClass, int maxConcurrent, int maxQueue) {
+		if (maxConcurrent <= 0 || maxQueue < 0) {
+			throw new IllegalArgumentException("Invalid limit for " + controllerClass + ": " + maxConcurrent + " " + maxQueue);
+		}
+		log.info("Limiting controller %s to %d concurrent requests and %d queued requests", controllerClass, maxConcurrent, maxQueue);
+		this.limits.put(controllerClass, new Limit(controllerClass, maxConcurrent, maxQueue));
+		this.defaults.remove(controllerClass);
+	}
+
+	/**
+	 * Acquires a permit to handle a request for the given controller. It waits if the controller is
+	 * at its limit and there's room at its queue.
+	 * 
+	 * @return the {@link Permit}, which should be released when the request is handled, or
+	 *         <code>null</code> if the request was rejected.
+	 */
+	public Permit acquire(ControllerDescriptor controllerDesc) {
+		Limit limit = this.getLimit(controllerDesc.getControllerClass());
+		if (limit == null) {
+			return UNLIMITED;
+		} else if (limit.acquire()) {
+			return new Permit(limit);
+		} else {
+			this.rejected.incrementAndGet();
+			log.warning("Request for controller %s rejected: %d active and %d queued requests", limit.name, limit.active(), limit.queued());
+			return null;
+		}
+	}
+
+	private Limit getLimit(String controllerClass) {
+		Limit limit = this.limits.get(controllerClass);
+		if (limit == null) {
+			limit = this.defaults.get(controllerClass);
+			if (limit == null) {
+				int maxConcurrent = Integer.parseInt(getProperty(DISPATCH_MAX_CONCURRENT));
+				limit = (maxConcurrent > 0) ? new Limit(controllerClass, maxConcurrent, Integer.parseInt(getProperty(DISPATCH_MAX_QUEUE)))
+						: Limit.NONE;
+				Limit current = this.defaults.putIfAbsent(controllerClass, limit);
+				if (current != null) {
+					limit = current;
+				}
+			}
+		}
+		return (limit != Limit.NONE) ? limit : null;
+	}
+
+	/**
+	 * @return the number of rejected requests
+	 */
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	/**
+	 * @return the number of requests waiting, for all controllers
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Limit limit : this.getLimits()) {
+			depth += limit.queued();
+		}
+		return depth;
+	}
+
+	/**
+	 * @return the current limits
+	 */
+	public Collection<Limit> getLimits() {
+		Collection<Limit> result = new ArrayList<Limit>(this.limits.values());
+		for (Limit limit : this.defaults.values()) {
+			if (limit != Limit.NONE) {
+				result.add(limit);
+			}
+		}
+		return Collections.unmodifiableCollection(result);
+	}
+
+	/**
+	 * A permit to handle a request. It should be released once the request is handled. Each
+	 * acquired permit holds its own slot.
+	 */
+	public static final class Permit {
+		private final Limit limit;
+		private final AtomicBoolean released = new AtomicBoolean(false);
+
+		private Permit(Limit limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * Releases this permit. Releasing it again does nothing, so it never frees a slot held by
+		 * another request.
+		 */
+		public void release() {
+			if (this.limit != null && this.released.compareAndSet(false, true)) {
+				this.limit.release();
+			}
+		}
+	}
+
+	/**
+	 * A controller's limit, and its metrics
+	 */
+	public static final class Limit {
+
+		private static final Limit NONE = new Limit(null, 1, 0);
+
+		private final String name;
+		private final int maxConcurrent;
+		private final int maxQueue;
+		private final Semaphore slots;
+		private final AtomicInteger queued = new AtomicInteger();
+		private final AtomicLong rejected = new AtomicLong();
+		private final long queueTimeout;
+
+		private Limit(String name, int maxConcurrent, int maxQueue) {
+			this.name = name;
+			this.maxConcurrent = maxConcurrent;
+			this.maxQueue = maxQueue;
+			this.queueTimeout = Long.parseLong(getProperty(DISPATCH_QUEUE_TIMEOUT));
+			this.slots = new Semaphore(maxConcurrent);
+		}
+
+		private boolean acquire() {
+			if (this.slots.tryAcquire()) {
+				return true;
+			}
+			if (this.queued.incrementAndGet() <= this.maxQueue) {
+				try {
+					if (this.slots.tryAcquire(this.queueTimeout, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					this.queued.decrementAndGet();
+				}
+			} else {
+				this.queued.decrementAndGet();
+			}
+			this.rejected.incrementAndGet();
+			return false;
+		}
+
+		private void release() {
+			this.slots.release();
+		}
+
+		/**
+		 * @return the controller class name
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * @return the max number of requests concurrently handled
+		 */
+		public int getMaxConcurrent() {
+			return this.maxConcurrent;
+		}
+
+		/**
+		 * @return the max number of waiting requests
+		 */
+		public int getMaxQueue() {
+			return this.maxQueue;
+		}
+
+		/**
+		 * @return the number of requests being handled
+		 */
+		public int active() {
+			return this.maxConcurrent - this.slots.availablePermits();
+		}
+
+		/**
+		 * @return the number of waiting requests
+		 */
+		public int queued() {
+			return this.queued.get();
+		}
+
+		/**
+		 * @return the number of rejected requests
+		 */
+		public long rejected() {
+			return this.rejected.get();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.format("%s: active %d/%d; queued %d/%d; rejected %d", this.name, this.active(), this.maxConcurrent, this.queued(),
+					this.maxQueue, this.rejected());
+		}
+	}
+}
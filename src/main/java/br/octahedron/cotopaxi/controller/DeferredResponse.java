@@ -0,0 +1,175 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.ASYNC_TIMEOUT;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import br.octahedron.util.Log;
+
+/**
+ * A {@link ControllerResponse} which will be completed later, usually by another thread. It's
+ * created by {@link Controller#defer()}, and lets a controller release the container thread while
+ * waiting for slow backends.
+ * 
+ * While the deferred response isn't completed, setting the controller's response (e.g., calling
+ * {@link Controller#render(String, int)} from a task wrapped by
+ * {@link InputController#inContext(Runnable)}) completes it. It can also be completed directly,
+ * using {@link DeferredResponse#complete(ControllerResponse)}.
+ * 
+ * If the servlet container supports asynchronous requests, the request is put in async mode and
+ * the response is dispatched when completed. Otherwise, the request thread waits for it.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class DeferredResponse implements ControllerResponse {
+
+	private static final Log log = new Log(DeferredResponse.class);
+
+	private final ControllerContext context;
+	// the context is closed once this response is both completed and released
+	private final AtomicInteger pending = new AtomicInteger(2);
+	private ControllerResponse result;
+	private Runnable listener;
+
+	DeferredResponse(ControllerContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * @return the context of the request which created this response
+	 */
+	ControllerContext getContext() {
+		return this.context;
+	}
+
+	/**
+	 * Releases this response's context, once it was dispatched or timed out. Its scope is closed
+	 * when this response is completed too, since the task completing a timed out response may
+	 * still be using its {@link br.octahedron.cotopaxi.inject.Scope#POOLED} instances.
+	 */
+	void release() {
+		this.done();
+	}
+
+	/**
+	 * Closes this response's context, if it was both completed and released.
+	 */
+	private void done() {
+		if (this.pending.decrementAndGet() == 0) {
+			this.context.close();
+		}
+	}
+
+	/**
+	 * Completes this response with the given {@link ControllerResponse}.
+	 * 
+	 * @throws IllegalStateException
+	 *             if this response was already completed
+	 */
+	public void complete(ControllerResponse response) {
+		if (response == null) {
+			throw new IllegalArgumentException("The response can't be null");
+		}
+		Runnable toNotify;
+		synchronized (this) {
+			if (this.result != null) {
+				throw new IllegalStateException("Response already defined");
+			}
+			this.result = response;
+			toNotify = this.listener;
+			this.notifyAll();
+		}
+		this.done();
+		if (toNotify != null) {
+			toNotify.run();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if this response was completed, <code>false</code> otherwise.
+	 */
+	public synchronized boolean isDone() {
+		return this.result != null;
+	}
+
+	/**
+	 * @return the {@link ControllerResponse} this response was completed with, or
+	 *         <code>null</code> if it wasn't completed yet.
+	 */
+	public synchronized ControllerResponse getResponse() {
+		return this.result;
+	}
+
+	/**
+	 * Waits this response be completed.
+	 * 
+	 * @param timeout
+	 *            the max time to wait, in milliseconds
+	 * @return the {@link ControllerResponse}, or <code>null</code> if it wasn't completed before the
+	 *         timeout.
+	 */
+	public synchronized ControllerResponse get(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+		while (this.result == null && remaining > 0) {
+			this.wait(remaining);
+			remaining = deadline - System.currentTimeMillis();
+		}
+		return this.result;
+	}
+
+	/**
+	 * Sets the listener to be run when this response is completed. The listener runs at the thread
+	 * which completes this response, or immediately, if this response is already completed.
+	 */
+	public void onComplete(Runnable listener) {
+		synchronized (this) {
+			if (this.result == null) {
+				this.listener = listener;
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * Waits this response be completed and dispatches it. If it isn't completed before the
+	 * {@link br.octahedron.cotopaxi.CotopaxiProperty#ASYNC_TIMEOUT}, a SERVICE UNAVAILABLE (503)
+	 * error is sent.
+	 */
+	@Override
+	public void dispatch(HttpServletResponse servletResponse) throws IOException {
+		ControllerResponse response = null;
+		try {
+			response = this.get(Long.parseLong(getProperty(ASYNC_TIMEOUT)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (response != null) {
+			response.dispatch(servletResponse);
+		} else {
+			log.warning("Deferred response not completed. Sending SERVICE UNAVAILABLE error.");
+			servletResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		}
+	}
+}
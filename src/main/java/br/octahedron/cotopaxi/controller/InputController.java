@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.concurrent.Callable;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -266,4 +267,23 @@ public abstract class InputController {
 	protected final boolean isAnswered() {
 		return getContext().isAnswered();
 	}
+
+	/**
+	 * Wraps the given task to run with the current request context, so it can use the input and
+	 * output methods when executed by another thread (e.g., by an executor).
+	 * 
+	 * @see ControllerContext#wrap(Runnable)
+	 */
+	protected final Runnable inContext(Runnable task) {
+		return ControllerContext.wrap(task);
+	}
+
+	/**
+	 * Wraps the given task to run with the current request context.
+	 * 
+	 * @see ControllerContext#wrap(Callable)
+	 */
+	protected final <V> Callable<V> inContext(Callable<V> task) {
+		return ControllerContext.wrap(task);
+	}
 }
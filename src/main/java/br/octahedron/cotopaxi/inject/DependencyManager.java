@@ -16,22 +16,41 @@
  */
 package br.octahedron.cotopaxi.inject;
 
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import br.octahedron.util.Log;
 
 /**
  * The class responsible by manage dependencies for classes.
  * 
+ * It's thread-safe. Registered implementations are read without locking, and each implementation
+ * created using {@link DependencyManager#resolveImplementation(Class, Callable)} is created only
+ * once, even when many threads ask for it at the same time.
+ * 
  * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
  */
 public class DependencyManager {
 
 	private static final Log log = new Log(DependencyManager.class);
 
-	protected static final Map<Class<?>, Object> instances = new HashMap<Class<?>, Object>();
-	protected static final Map<Class<?>, Class<?>> dependencies = new HashMap<Class<?>, Class<?>>();
+	protected static final Map<Class<?>, Object> instances = new ConcurrentHashMap<Class<?>, Object>();
+	protected static final Map<Class<?>, Class<?>> dependencies = new ConcurrentHashMap<Class<?>, Class<?>>();
+	// implementations being created
+	private static final ConcurrentMap<Class<?>, FutureTask<Object>> pending = new ConcurrentHashMap<Class<?>, FutureTask<Object>>();
+	// classes being created by the current thread, to detect cyclic dependencies
+	private static final ThreadLocal<Set<Class<?>>> creating = new ThreadLocal<Set<Class<?>>>() {
+		@Override
+		protected Set<Class<?>> initialValue() {
+			return new HashSet<Class<?>>();
+		}
+	};
 
 	/**
 	 * Registers an implementation class for a given dependency.
@@ -80,6 +99,60 @@ public class DependencyManager {
 		return (Class<? extends T>) ((dependencies.containsKey(dependencyIF)) ? dependencies.get(dependencyIF) : dependencyIF);
 	}
 
+	/**
+	 * Gets the implementation for the given class, creating and registering it if there's no
+	 * implementation yet. The implementation is created only once: if many threads ask for the
+	 * same class at the same time, one of them creates it and the others wait for it.
+	 * 
+	 * @param klass
+	 *            the implementation's class
+	 * @param factory
+	 *            creates the implementation, if necessary
+	 * @return the implementation registered for the given class
+	 * @throws InstantiationException
+	 *             if the factory fails, or if there's a cyclic dependency
+	 */
+	protected static <T> T resolveImplementation(Class<T> klass, Callable<? extends T> factory) throws InstantiationException {
+		T instance = getImplementation(klass);
+		if (instance == null) {
+			Set<Class<?>> current = creating.get();
+			if (current.contains(klass)) {
+				throw new InstantiationException("Cyclic dependency found creating " + klass);
+			}
+			@SuppressWarnings("unchecked")
+			FutureTask<Object> task = new FutureTask<Object>((Callable<Object>) factory);
+			FutureTask<Object> running = pending.putIfAbsent(klass, task);
+			if (running == null) {
+				// this thread creates the instance
+				running = task;
+				current.add(klass);
+				try {
+					task.run();
+				} finally {
+					current.remove(klass);
+				}
+			}
+			try {
+				instance = klass.cast(running.get());
+				if (running == task) {
+					instances.put(klass, instance);
+				}
+			} catch (ExecutionException ex) {
+				InstantiationException iex = new InstantiationException("Unable to create " + klass + ": " + ex.getCause());
+				iex.initCause(ex.getCause());
+				throw iex;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InstantiationException("Interrupted while waiting " + klass + " creation");
+			} finally {
+				if (running == task) {
+					pending.remove(klass, task);
+				}
+			}
+		}
+		return instance;
+	}
+
 	protected static boolean containsImplementation(Class<?> klass) {
 		return instances.containsKey(klass);
 	}
@@ -85,4 +85,15 @@ public @interface Inject {
 	 * To use a new and exclusive instance, set it to <code>true</code>
 	 */
 	boolean newInstance() default false;
+
+	/**
+	 * Defines the {@link Scope} of the injected instance. By default its {@link Scope#SINGLETON}.
+	 * 
+	 * {@link Scope#REQUEST} and {@link Scope#POOLED} scopes are only supported for interface typed
+	 * fields, which receive a proxy to the current request's instance. It's ignored if
+	 * {@link #newInstance()} is <code>true</code>.
+	 * 
+	 * @see RequestScope
+	 */
+	Scope scope() default Scope.SINGLETON;
 }
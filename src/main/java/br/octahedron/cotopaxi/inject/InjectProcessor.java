@@ -0,0 +1,220 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * An annotation processor which generates an {@link InstanceFactory} for each class with
+ * {@link Inject} annotated fields. The generated factories create and inject instances without
+ * reflection, and are used by the {@link Injector} when available.
+ * 
+ * It's registered as a service, so it runs automatically when compiling against the cotopaxi jar.
+ * Classes which can't be handled by generated code (eg.: private nested classes or fields without
+ * a public set method) are skipped, with a warning, and are injected using reflection.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+@SupportedAnnotationTypes("br.octahedron.cotopaxi.inject.Inject")
+public class InjectProcessor extends AbstractProcessor {
+
+	private static final String INJECTOR = Injector.class.getName();
+	private static final String FACTORY = InstanceFactory.class.getName();
+	private static final String SCOPE = Scope.class.getName();
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+	 */
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+	 * javax.annotation.processing.RoundEnvironment)
+	 */
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+		for (Element element : roundEnv.getElementsAnnotatedWith(Inject.class)) {
+			if (element.getKind() == ElementKind.FIELD) {
+				types.add((TypeElement) element.getEnclosingElement());
+			}
+		}
+		for (TypeElement type : types) {
+			try {
+				this.generate(type);
+			} catch (IOException ex) {
+				this.processingEnv.getMessager().printMessage(Kind.ERROR, "Unable to generate injection factory: " + ex.getMessage(), type);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Generates the {@link InstanceFactory} for the given type, if possible.
+	 */
+	private void generate(TypeElement type) throws IOException {
+		if (!this.isAccessible(type)) {
+			this.warning("Injection factory not generated: class isn't accessible", type);
+			return;
+		}
+		List<String[]> injections = new ArrayList<String[]>();
+		TypeElement current = type;
+		while (current != null) {
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				Inject inject = field.getAnnotation(Inject.class);
+				if (inject != null) {
+					String[] injection = this.injection(type, field, inject);
+					if (injection == null) {
+						return;
+					}
+					injections.add(injection);
+				}
+			}
+			current = this.superclass(current);
+		}
+
+		String pkg = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String binaryName = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+		String factoryName = ((pkg.length() > 0) ? binaryName.substring(pkg.length() + 1) : binaryName) + InstanceFactory.SUFFIX;
+		String typeName = type.getQualifiedName().toString();
+
+		PrintWriter out = new PrintWriter(this.processingEnv.getFiler()
+				.createSourceFile((pkg.length() > 0) ? pkg + "." + factoryName : factoryName, type).openWriter());
+		try {
+			if (pkg.length() > 0) {
+				out.printf("package %s;%n%n", pkg);
+			}
+			out.printf("/**%n * Generated by %s. Don't edit.%n */%n", InjectProcessor.class.getName());
+			out.printf("@SuppressWarnings(\"all\")%n");
+			out.printf("public final class %s implements %s<%s> {%n%n", factoryName, FACTORY, typeName);
+			out.printf("\tpublic %s newInstance() {%n", typeName);
+			out.printf((this.isInstantiable(type)) ? "\t\treturn new %s();%n" : "\t\treturn null;%n", typeName);
+			out.printf("\t}%n%n");
+			out.printf("\tpublic void inject(%s instance) {%n", typeName);
+			for (int i = 0; i < injections.size(); i++) {
+				String[] injection = injections.get(i);
+				out.printf("\t\t%s value%d = %s.resolve(%s.class, %s, %s.%s);%n", injection[0], i, INJECTOR, injection[0], injection[2], SCOPE,
+						injection[3]);
+				out.printf("\t\tif (value%d != null) {%n", i);
+				out.printf("\t\t\tinstance.%s(value%d);%n", injection[1], i);
+				out.printf("\t\t}%n");
+			}
+			out.printf("\t}%n}%n");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Resolves the given field injection, as the {@link Injector} does by reflection.
+	 * 
+	 * @return the field type, the set method name, the newInstance flag and the scope, or
+	 *         <code>null</code> if the field can't be injected by generated code.
+	 */
+	private String[] injection(TypeElement type, VariableElement field, Inject inject) {
+		TypeMirror fieldType = this.processingEnv.getTypeUtils().erasure(field.asType());
+		if (fieldType.getKind() != TypeKind.DECLARED || !this.isAccessible((TypeElement) ((DeclaredType) fieldType).asElement())) {
+			this.warning("Injection factory not generated: field type isn't accessible", field);
+			return null;
+		}
+		String simpleName = ((DeclaredType) fieldType).asElement().getSimpleName().toString();
+		String setName = (simpleName.length() > 2) ? "set" + simpleName.substring(0, 1).toUpperCase() + simpleName.substring(1) : simpleName
+				.toUpperCase();
+		for (ExecutableElement method : ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(type))) {
+			if (method.getSimpleName().contentEquals(setName) && method.getModifiers().contains(Modifier.PUBLIC)
+					&& method.getParameters().size() == 1
+					&& this.processingEnv.getTypeUtils().isSameType(fieldType,
+							this.processingEnv.getTypeUtils().erasure(method.getParameters().get(0).asType()))) {
+				return new String[] { fieldType.toString(), setName, String.valueOf(inject.newInstance()), inject.scope().name() };
+			}
+		}
+		this.warning("Injection factory not generated: there's no public method " + setName + "(" + simpleName + ")", field);
+		return null;
+	}
+
+	/**
+	 * Checks if the given type can be referenced by code at its package.
+	 */
+	private boolean isAccessible(TypeElement type) {
+		Element current = type;
+		while (!(current instanceof PackageElement)) {
+			if (current.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			if ((current.getKind().isClass() || current.getKind().isInterface()) && current.getEnclosingElement() instanceof TypeElement
+					&& !current.getModifiers().contains(Modifier.STATIC) && !current.getKind().isInterface()) {
+				// inner classes need an enclosing instance
+				return false;
+			}
+			current = current.getEnclosingElement();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the given type has a non private default constructor.
+	 */
+	private boolean isInstantiable(TypeElement type) {
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private TypeElement superclass(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		return (superclass.getKind() == TypeKind.DECLARED) ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+	}
+
+	private void warning(String message, Element element) {
+		this.processingEnv.getMessager().printMessage(Kind.WARNING, message, element);
+	}
+}
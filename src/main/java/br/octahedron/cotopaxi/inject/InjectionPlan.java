@@ -0,0 +1,171 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import br.octahedron.util.Log;
+import br.octahedron.util.ReflectionUtil;
+
+/**
+ * The injection plan for a class: its generated {@link InstanceFactory}, if exists, or the
+ * {@link Inject} annotated fields, with its set methods already resolved. It's built once per
+ * class, so injecting an object doesn't need to scan its class hierarchy again.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class InjectionPlan {
+
+	private static final Log log = new Log(InjectionPlan.class);
+	/**
+	 * The plan for classes without fields to be injected
+	 */
+	static final InjectionPlan EMPTY = new InjectionPlan(new InjectionPoint[0], null);
+
+	private final InjectionPoint[] points;
+	private final InstanceFactory<Object> factory;
+
+	private InjectionPlan(InjectionPoint[] points, InstanceFactory<Object> factory) {
+		this.points = points;
+		this.factory = factory;
+	}
+
+	/**
+	 * @return the {@link InjectionPoint}s for this plan
+	 */
+	InjectionPoint[] getPoints() {
+		return this.points;
+	}
+
+	/**
+	 * @return the generated {@link InstanceFactory}, or <code>null</code> if the class has no
+	 *         generated factory.
+	 */
+	InstanceFactory<Object> getFactory() {
+		return this.factory;
+	}
+
+	/**
+	 * Gets the {@link InjectionPlan} for the given class. It uses the class generated
+	 * {@link InstanceFactory}, if exists, or falls back to reflection.
+	 */
+	static InjectionPlan forClass(Class<?> klass) {
+		InstanceFactory<Object> factory = loadFactory(klass);
+		if (factory != null) {
+			log.debug("Using generated factory %s", factory.getClass().getName());
+			return new InjectionPlan(EMPTY.points, factory);
+		} else {
+			return build(klass);
+		}
+	}
+
+	/**
+	 * Loads the generated {@link InstanceFactory} for the given class.
+	 * 
+	 * @return the factory, or <code>null</code> if there's no generated factory.
+	 */
+	@SuppressWarnings("unchecked")
+	private static InstanceFactory<Object> loadFactory(Class<?> klass) {
+		ClassLoader loader = klass.getClassLoader();
+		if (loader == null) {
+			// bootstrap classes have no generated factory
+			return null;
+		}
+		try {
+			Class<?> factoryClass = Class.forName(klass.getName() + InstanceFactory.SUFFIX, true, loader);
+			return (InstanceFactory<Object>) factoryClass.newInstance();
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (Exception e) {
+			log.warning("Unable to load generated factory for %s: %s", klass.getName(), e.getLocalizedMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Builds the reflection based {@link InjectionPlan} for the given class. Fields without a
+	 * proper set method are logged and ignored.
+	 */
+	static InjectionPlan build(Class<?> klass) {
+		Collection<Field> fields = ReflectionUtil.getAnnotatedFields(klass, Inject.class);
+		if (fields.isEmpty()) {
+			return EMPTY;
+		}
+		List<InjectionPoint> points = new ArrayList<InjectionPoint>(fields.size());
+		for (Field f : fields) {
+			Class<?> type = f.getType();
+			try {
+				Method set = ReflectionUtil.getSetMethod(type.getSimpleName(), klass, type);
+				Inject inject = f.getAnnotation(Inject.class);
+				points.add(new InjectionPoint(type, set, inject.newInstance(), inject.scope()));
+			} catch (Exception ex) {
+				log.error(ex, "Unable to performe injection of field %s at %s: %s", f.getName(), klass.getName(), ex.getLocalizedMessage());
+			}
+		}
+		return (points.isEmpty()) ? EMPTY : new InjectionPlan(points.toArray(new InjectionPoint[points.size()]), null);
+	}
+
+	/**
+	 * A field to be injected
+	 */
+	static class InjectionPoint {
+		private final Class<?> type;
+		private final Method setter;
+		private final boolean newInstance;
+		private final Scope scope;
+
+		private InjectionPoint(Class<?> type, Method setter, boolean newInstance, Scope scope) {
+			this.type = type;
+			this.setter = setter;
+			this.newInstance = newInstance;
+			this.scope = scope;
+		}
+
+		/**
+		 * @return the field type
+		 */
+		Class<?> getType() {
+			return this.type;
+		}
+
+		/**
+		 * @return the field set method
+		 */
+		Method getSetter() {
+			return this.setter;
+		}
+
+		/**
+		 * @return <code>true</code> if a new instance should be injected, <code>false</code> to
+		 *         inject the shared one.
+		 */
+		boolean isNewInstance() {
+			return this.newInstance;
+		}
+
+		/**
+		 * @return the injected instance {@link Scope}
+		 */
+		Scope getScope() {
+			return this.scope;
+		}
+	}
+}
@@ -16,17 +16,16 @@
  */
 package br.octahedron.cotopaxi.inject;
 
-import static br.octahedron.cotopaxi.inject.DependencyManager.containsImplementation;
 import static br.octahedron.cotopaxi.inject.DependencyManager.getImplementation;
-import static br.octahedron.cotopaxi.inject.DependencyManager.registerImplementation;
 import static br.octahedron.cotopaxi.inject.DependencyManager.resolveDependency;
+import static br.octahedron.cotopaxi.inject.DependencyManager.resolveImplementation;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
+import br.octahedron.cotopaxi.inject.InjectionPlan.InjectionPoint;
 import br.octahedron.util.Log;
-import br.octahedron.util.ReflectionUtil;
 
 /**
  * This entity handles classes' instances. It provide access to unique instances of the classes, and
@@ -39,62 +38,121 @@ public class Injector {
 	private Injector() { }
 
 	private static final Log log = new Log(Injector.class);
+	private static final Map<Class<?>, InjectionPlan> plans = new ConcurrentHashMap<Class<?>, InjectionPlan>();
 
 	/**
-	 * Gets a <T> instance for the given {@link Class} ready to be used.
+	 * Gets a <T> instance for the given {@link Class} ready to be used. The instance is created
+	 * only once, even if many threads ask for it concurrently.
 	 * 
 	 * @param klass
 	 *            the T's class
 	 * @return The T instance.
 	 * @throws InstantiationException
 	 */
-	public static <T> T getInstance(Class<T> klass) throws InstantiationException {
-		try {
-			if (!containsImplementation(klass)) {
-				T instance = createInstance(klass);
-				registerImplementation(klass, instance);
+	public static <T> T getInstance(final Class<T> klass) throws InstantiationException {
+		T instance = getImplementation(klass);
+		if (instance == null) {
+			try {
+				instance = resolveImplementation(klass, new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						return createInstance(klass);
+					}
+				});
+			} catch (Exception e) {
+				InstantiationException iex = new InstantiationException("Unable to load class " + klass);
+				iex.initCause(e);
+				throw iex;
 			}
-			return getImplementation(klass);
-		} catch (Exception e) {
-			throw new InstantiationException("Unable to load class " + klass);
 		}
+		return instance;
 	}
 
 	/**
-	 * Creates a new instance of the given class.
+	 * Creates a new instance of the given class. It uses the class generated
+	 * {@link InstanceFactory}, if exists, or reflection.
 	 */
 	public static <T> T createInstance(Class<T> klass) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
 		Class<? extends T> implClass = resolveDependency(klass);
-		T instance = implClass.newInstance();
+		InstanceFactory<Object> factory = getPlan(implClass).getFactory();
+		T instance = (factory != null) ? implClass.cast(factory.newInstance()) : null;
+		if (instance == null) {
+			instance = implClass.newInstance();
+		}
 		inject(instance);
 		return instance;
 	}
 
+	/**
+	 * Gets the object to be injected into a field of the given type, using the
+	 * {@link Scope#SINGLETON} scope.
+	 * 
+	 * @see Injector#resolve(Class, boolean, Scope)
+	 */
+	public static <T> T resolve(Class<T> klass, boolean newInstance) {
+		return resolve(klass, newInstance, Scope.SINGLETON);
+	}
+
+	/**
+	 * Gets the object to be injected into a field of the given type. It's used by the generated
+	 * {@link InstanceFactory}s.
+	 * 
+	 * @param klass
+	 *            the field's type
+	 * @param newInstance
+	 *            if a new instance should be created, or the scoped one should be used
+	 * @param scope
+	 *            the injected instance scope. For {@link Scope#REQUEST} and {@link Scope#POOLED}
+	 *            scopes, a proxy to the current request's instance is returned.
+	 * @return the object to be injected, or <code>null</code> if it wasn't possible to create it.
+	 */
+	public static <T> T resolve(Class<T> klass, boolean newInstance, Scope scope) {
+		try {
+			if (newInstance) {
+				return createInstance(klass);
+			} else if (scope == Scope.SINGLETON) {
+				return getInstance(klass);
+			} else {
+				return RequestScope.proxy(klass, scope);
+			}
+		} catch (Exception ex) {
+			log.error(ex, "Unable to performe injection: %s", ex.getLocalizedMessage());
+			return null;
+		}
+	}
+
 	/**
 	 * Checks if should inject any attribute and inject if necessary.
 	 */
 	protected static void inject(Object instance) {
-		Collection<Field> fields = ReflectionUtil.getAnnotatedFields(instance.getClass(), Inject.class);
-		// for each annotated field
-		for (Field f : fields) {
-			try {
-				Inject inject = f.getAnnotation(Inject.class);
-				// create the object to inject
-				Class<?> klass = f.getType();
-				Object obj;
-				if (inject.newInstance()) {
-					obj = createInstance(klass);
-				} else {
-					obj = getInstance(klass);
+		InjectionPlan plan = getPlan(instance.getClass());
+		if (plan.getFactory() != null) {
+			plan.getFactory().inject(instance);
+		} else {
+			for (InjectionPoint point : plan.getPoints()) {
+				Object obj = resolve(point.getType(), point.isNewInstance(), point.getScope());
+				if (obj != null) {
+					try {
+						log.debug("Injecting object %s into object %s", obj.getClass().getSimpleName(), instance.getClass().getSimpleName());
+						point.getSetter().invoke(instance, obj);
+					} catch (Exception ex) {
+						log.error(ex, "Unable to performe injection: %s", ex.getLocalizedMessage());
+					}
 				}
-				// gets the instance's method to inject the object created above
-				log.info("Injecting object %s into object %s", obj.getClass().getSimpleName(), instance.getClass().getSimpleName());
-				Method set = ReflectionUtil.getSetMethod(klass.getSimpleName(), instance.getClass(), klass);
-				set.invoke(instance, obj);
-			} catch (Exception ex) {
-				log.error(ex, "Unable to performe injection: %s", ex.getLocalizedMessage());
 			}
 		}
 	}
-}
 
+	/**
+	 * Gets the {@link InjectionPlan} for the given class, building it if necessary.
+	 */
+	private static InjectionPlan getPlan(Class<?> klass) {
+		InjectionPlan plan = plans.get(klass);
+		if (plan == null) {
+			// concurrent builds produce equivalent plans, so there's no need to lock
+			plan = InjectionPlan.forClass(klass);
+			plans.put(klass, plan);
+		}
+		return plan;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+/**
+ * Creates and injects instances of a given type without reflection. Implementations are
+ * generated at compile time by the {@link InjectProcessor} for classes with {@link Inject}
+ * annotated fields, and are used by the {@link Injector} when available.
+ * 
+ * The generated factory for a class <code>Foo</code> is named <code>Foo_InjectionFactory</code>
+ * and lives at the same package.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public interface InstanceFactory<T> {
+
+	/**
+	 * The generated factories' name suffix
+	 */
+	public static final String SUFFIX = "_InjectionFactory";
+
+	/**
+	 * Creates a new, not injected, instance.
+	 * 
+	 * @return the new instance, or <code>null</code> if this factory can't create instances (eg.:
+	 *         the class is abstract or has no accessible default constructor).
+	 */
+	public T newInstance();
+
+	/**
+	 * Injects the {@link Inject} annotated fields into the given instance.
+	 */
+	public void inject(T instance);
+}
@@ -0,0 +1,95 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.INSTANCE_POOL_SIZE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded pool of instances of a class, used by the {@link Scope#POOLED} scope. If the pool is
+ * empty, a new instance is created; if it's full, returned instances are discarded. So, it never
+ * blocks.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class InstancePool<T> {
+
+	private static final ConcurrentMap<Class<?>, InstancePool<?>> pools = new ConcurrentHashMap<Class<?>, InstancePool<?>>();
+
+	private final Class<T> klass;
+	private final BlockingQueue<T> idle;
+
+	public InstancePool(Class<T> klass, int maxSize) {
+		this.klass = klass;
+		this.idle = new ArrayBlockingQueue<T>(Math.max(maxSize, 1));
+	}
+
+	/**
+	 * Gets the shared {@link InstancePool} for the given class. Its size is defined by the
+	 * {@link br.octahedron.cotopaxi.CotopaxiProperty#INSTANCE_POOL_SIZE} property.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> InstancePool<T> getPool(Class<T> klass) {
+		InstancePool<T> pool = (InstancePool<T>) pools.get(klass);
+		if (pool == null) {
+			pool = new InstancePool<T>(klass, Integer.parseInt(getProperty(INSTANCE_POOL_SIZE)));
+			InstancePool<T> current = (InstancePool<T>) pools.putIfAbsent(klass, pool);
+			if (current != null) {
+				pool = current;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Borrows an instance from the pool, creating a new one if there's no idle instance.
+	 */
+	public T borrow() throws InstantiationException {
+		T instance = this.idle.poll();
+		if (instance == null) {
+			try {
+				instance = Injector.createInstance(this.klass);
+			} catch (InstantiationException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				InstantiationException iex = new InstantiationException("Unable to create " + this.klass);
+				iex.initCause(ex);
+				throw iex;
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns an instance to the pool. If the pool is full, the instance is discarded.
+	 */
+	public void giveBack(Object instance) {
+		this.idle.offer(this.klass.cast(instance));
+	}
+
+	/**
+	 * @return the number of idle instances
+	 */
+	public int idle() {
+		return this.idle.size();
+	}
+}
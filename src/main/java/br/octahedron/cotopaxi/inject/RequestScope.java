@@ -0,0 +1,187 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.octahedron.util.Log;
+
+/**
+ * Holds the {@link Scope#REQUEST} and {@link Scope#POOLED} instances for a request. It's opened and
+ * closed with the request's {@link br.octahedron.cotopaxi.controller.ControllerContext}, and it's
+ * bound to the thread handling the request.
+ * 
+ * Request and pooled instances are injected as proxies, which delegates to the instance held by
+ * the current {@link RequestScope}. So, this scopes are only supported for interfaces typed fields.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public final class RequestScope {
+
+	private static final Log log = new Log(RequestScope.class);
+	private static final ThreadLocal<RequestScope> current = new ThreadLocal<RequestScope>();
+
+	private final Map<Class<?>, Object> instances = new HashMap<Class<?>, Object>();
+	private final List<Class<?>> pooled = new ArrayList<Class<?>>();
+
+	/**
+	 * Opens a new {@link RequestScope} and binds it to the current thread.
+	 */
+	public static RequestScope open() {
+		RequestScope scope = new RequestScope();
+		scope.bind();
+		return scope;
+	}
+
+	/**
+	 * Binds this scope to the current thread. A closed scope can be bound again, to be reused.
+	 */
+	public void bind() {
+		current.set(this);
+	}
+
+	/**
+	 * Binds the given scope to the current thread, or unbinds the current scope if the given scope
+	 * is <code>null</code>.
+	 * 
+	 * @return the scope previously bound to the current thread, or <code>null</code> if there was
+	 *         no one.
+	 */
+	public static RequestScope exchange(RequestScope scope) {
+		RequestScope previous = current.get();
+		if (scope != null) {
+			current.set(scope);
+		} else {
+			current.remove();
+		}
+		return previous;
+	}
+
+	/**
+	 * @return the {@link RequestScope} bound to the current thread, or <code>null</code> if there's
+	 *         no one.
+	 */
+	public static RequestScope current() {
+		return current.get();
+	}
+
+	/**
+	 * Closes this scope: the pooled instances are returned to its pools, the request instances are
+	 * discarded and this scope is unbound from the current thread, if bound.
+	 */
+	public synchronized void close() {
+		for (Class<?> klass : this.pooled) {
+			InstancePool.getPool(klass).giveBack(this.instances.get(klass));
+		}
+		this.pooled.clear();
+		this.instances.clear();
+		if (current.get() == this) {
+			current.remove();
+		}
+	}
+
+	/**
+	 * Gets the instance of the given class for this scope, creating or borrowing it if necessary.
+	 */
+	public synchronized <T> T getInstance(Class<T> klass, Scope scope) throws InstantiationException {
+		Object instance = this.instances.get(klass);
+		if (instance == null) {
+			if (scope == Scope.POOLED) {
+				instance = InstancePool.getPool(klass).borrow();
+				this.pooled.add(klass);
+			} else {
+				try {
+					instance = Injector.createInstance(klass);
+				} catch (InstantiationException ex) {
+					throw ex;
+				} catch (Exception ex) {
+					InstantiationException iex = new InstantiationException("Unable to create " + klass);
+					iex.initCause(ex);
+					throw iex;
+				}
+			}
+			this.instances.put(klass, instance);
+		}
+		return klass.cast(instance);
+	}
+
+	/**
+	 * Creates a proxy for the given interface, which delegates to the instance held by the current
+	 * {@link RequestScope}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given class isn't an interface
+	 */
+	public static <T> T proxy(Class<T> klass, Scope scope) {
+		if (!klass.isInterface()) {
+			throw new IllegalArgumentException(scope + " scope is only supported for interfaces, but " + klass.getName() + " isn't");
+		}
+		return klass.cast(Proxy.newProxyInstance(klass.getClassLoader(), new Class<?>[] { klass }, new ScopedHandler(klass, scope)));
+	}
+
+	/**
+	 * The proxies' handler. It delegates the calls to the instance held by the current
+	 * {@link RequestScope}.
+	 */
+	private static class ScopedHandler implements InvocationHandler {
+
+		private final Class<?> klass;
+		private final Scope scope;
+
+		public ScopedHandler(Class<?> klass, Scope scope) {
+			this.klass = klass;
+			this.scope = scope;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method,
+		 * java.lang.Object[])
+		 */
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				// equals, hashCode and toString refers to the proxy itself
+				if ("equals".equals(method.getName())) {
+					return proxy == args[0];
+				} else if ("hashCode".equals(method.getName())) {
+					return System.identityHashCode(proxy);
+				} else {
+					return this.scope + " proxy for " + this.klass.getName();
+				}
+			}
+			RequestScope requestScope = current();
+			if (requestScope == null) {
+				log.warning("No request scope available for %s", this.klass.getName());
+				throw new IllegalStateException("There's no request scope bound to current thread");
+			}
+			try {
+				return method.invoke(requestScope.getInstance(this.klass, this.scope), args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+/**
+ * The scopes for {@link Inject} annotated fields.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public enum Scope {
+	/**
+	 * A single instance, shared by the whole application.
+	 */
+	SINGLETON,
+	/**
+	 * An instance per request. It's created on its first use at a request and discarded when the
+	 * request ends.
+	 */
+	REQUEST,
+	/**
+	 * An instance borrowed from a bounded pool on its first use at a request, and returned to the
+	 * pool when the request ends, after the {@link br.octahedron.cotopaxi.interceptor.FinalizerInterceptor}s
+	 * run. Instances are never used by two requests at the same time.
+	 */
+	POOLED;
+}
@@ -23,11 +23,14 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import br.octahedron.cotopaxi.controller.Controller;
 import br.octahedron.cotopaxi.controller.ControllerContext;
+import br.octahedron.cotopaxi.view.response.RenderableResponse;
 import br.octahedron.cotopaxi.view.response.TemplateResponse;
 import br.octahedron.util.Log;
 import br.octahedron.util.ReflectionUtil;
@@ -35,12 +38,17 @@ import br.octahedron.util.ReflectionUtil;
 /**
  * This entity is responsible by load and execute interceptors.
  * 
+ * The {@link ControllerInterceptor}s which apply to a controller method are computed once, on the
+ * first execution for such method, and kept as an {@link InterceptorChain}. So, methods with no
+ * interceptors cost no reflection at all.
+ * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
 public class InterceptorManager {
 
 	private static final Log log = new Log(InterceptorManager.class);
 	private Map<Class<? extends Annotation>, ControllerInterceptor> controllerInterceptors = new LinkedHashMap<Class<? extends Annotation>, ControllerInterceptor>();
+	private Map<Method, InterceptorChain> chains = new ConcurrentHashMap<Method, InterceptorChain>();
 	// fields are protected for tests
 	protected Collection<TemplateInterceptor> templateInterceptors = new ArrayList<TemplateInterceptor>();
 	protected Collection<FinalizerInterceptor> finalizerInterceptors = new ArrayList<FinalizerInterceptor>();
@@ -70,30 +78,65 @@ public class InterceptorManager {
 	protected void addControllerInterceptor(ControllerInterceptor interceptor) {
 		Class<? extends Annotation> ann = interceptor.getInterceptorAnnotation();
 		this.controllerInterceptors.put(ann, interceptor);
+		// chains computed so far doesn't consider the new interceptor
+		this.chains.clear();
 	}
 
 	/**
 	 * Execute the {@link ControllerInterceptor} for the given annotations.
-	 * @param context 
 	 * 
-	 * @param annotations
-	 *            the {@link Controller} method {@link Annotation}
+	 * @param controllerMethod
+	 *            the {@link Controller} method
+	 * @param context
+	 *            the current {@link ControllerContext}
 	 */
 	public void execute(Method controllerMethod, ControllerContext context) {
-		for (Entry<Class<? extends Annotation>, ControllerInterceptor> entry : this.controllerInterceptors.entrySet()) {
-			Annotation ann = getAnnotation(controllerMethod, entry.getKey());
-			if (ann != null) {
-				ControllerInterceptor interceptor = entry.getValue();
-				log.debug("Executing ControllerInterceptor %s with annotation %s", interceptor.getClass(), entry.getKey());
-				interceptor.execute(ann);
-			}
-			if(context != null && (context.isAnswered() || context.forwarded())) {
+		InterceptorChain chain = this.getChain(controllerMethod);
+		for (int i = 0; i < chain.interceptors.length; i++) {
+			ControllerInterceptor interceptor = chain.interceptors[i];
+			Annotation ann = chain.annotations[i];
+			log.debug("Executing ControllerInterceptor %s with annotation %s", interceptor.getClass(), ann.annotationType());
+			interceptor.execute(ann);
+			if (context != null && (context.isAnswered() || context.forwarded())) {
 				log.debug("Controller already answered/forwarded - aborting interceptors execution!");
 				break;
 			}
 		}
 	}
 
+	/**
+	 * Prepares the {@link ControllerInterceptor}s for the given {@link Method}, computing its
+	 * {@link InterceptorChain} in advance.
+	 * 
+	 * @param controllerMethod
+	 *            the {@link Controller} method
+	 */
+	public void prepare(Method controllerMethod) {
+		this.getChain(controllerMethod);
+	}
+
+	/**
+	 * Gets the {@link InterceptorChain} for the given method, computing it if necessary.
+	 */
+	private InterceptorChain getChain(Method controllerMethod) {
+		InterceptorChain chain = this.chains.get(controllerMethod);
+		if (chain == null) {
+			List<ControllerInterceptor> interceptors = new ArrayList<ControllerInterceptor>();
+			List<Annotation> annotations = new ArrayList<Annotation>();
+			for (Entry<Class<? extends Annotation>, ControllerInterceptor> entry : this.controllerInterceptors.entrySet()) {
+				Annotation ann = this.getAnnotation(controllerMethod, entry.getKey());
+				if (ann != null) {
+					interceptors.add(entry.getValue());
+					annotations.add(ann);
+				}
+			}
+			chain = (interceptors.isEmpty()) ? InterceptorChain.EMPTY : new InterceptorChain(
+					interceptors.toArray(new ControllerInterceptor[interceptors.size()]), annotations.toArray(new Annotation[annotations.size()]));
+			this.chains.put(controllerMethod, chain);
+		}
+		return chain;
+	}
+
 	/**
 	 * Try to gets an annotation from the given {@link Method}. First is looks for the
 	 * {@link Annotation} at the method's declaring class, if the declaring class has no such
@@ -122,6 +165,21 @@ public class InterceptorManager {
 		}
 	}
 
+	/**
+	 * Executes the {@link TemplateInterceptor}s for the given {@link RenderableResponse}. For
+	 * {@link TemplateResponse}s it's the same as {@link #preRender(TemplateResponse)}.
+	 */
+	public void preRender(RenderableResponse response) {
+		if (response instanceof TemplateResponse) {
+			this.preRender((TemplateResponse) response);
+		} else {
+			for (TemplateInterceptor interceptor : this.templateInterceptors) {
+				log.debug("Executing RenderableResponse preRender(%s): %s", response.getClass(), interceptor.getClass());
+				interceptor.preRenderResponse(response);
+			}
+		}
+	}
+
 	/**
 	 * Executes the {@link FinalizerInterceptor} finish.
 	 */
@@ -132,4 +190,19 @@ public class InterceptorManager {
 		}
 	}
 
+	/**
+	 * The {@link ControllerInterceptor}s, and its annotations, to be executed for a controller
+	 * method, in execution order.
+	 */
+	private static class InterceptorChain {
+		static final InterceptorChain EMPTY = new InterceptorChain(new ControllerInterceptor[0], new Annotation[0]);
+
+		final ControllerInterceptor[] interceptors;
+		final Annotation[] annotations;
+
+		InterceptorChain(ControllerInterceptor[] interceptors, Annotation[] annotations) {
+			this.interceptors = interceptors;
+			this.annotations = annotations;
+		}
+	}
 }
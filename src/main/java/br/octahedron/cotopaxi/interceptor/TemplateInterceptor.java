@@ -39,4 +39,12 @@ public abstract class TemplateInterceptor extends InputController {
 	 */
 	public abstract void preRender(TemplateResponse response);
 
+	/**
+	 * Executes this interceptor, for the given {@link RenderableResponse} which isn't a
+	 * {@link TemplateResponse}, such as JSON and text responses, before the response be render.
+	 * By default it does nothing.
+	 */
+	public void preRenderResponse(RenderableResponse response) {
+	}
+
 }
@@ -0,0 +1,118 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+/**
+ * A String keyed map, which ignores keys case. It can also looks up a key using just a prefix of
+ * the given String, so the routes can be found without creating lower case or sub Strings.
+ * 
+ * Keys are expected to be ASCII, as the mapping URLs are. It isn't thread-safe for writes: it
+ * should be fully populated before being shared.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class CaseInsensitiveMap<V> {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	// open addressing tables, with linear probing
+	private String[] keys = new String[INITIAL_CAPACITY];
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Puts a value. The key is stored in lower case.
+	 */
+	void put(String key, V value) {
+		if ((this.size + 1) * 2 > this.keys.length) {
+			this.resize();
+		}
+		key = key.toLowerCase();
+		int i = this.indexOf(key, key.length());
+		if (this.keys[i] == null) {
+			this.keys[i] = key;
+			this.size++;
+		}
+		this.values[i] = value;
+	}
+
+	/**
+	 * Gets the value for the given key.
+	 */
+	V get(String key) {
+		return this.get(key, key.length());
+	}
+
+	/**
+	 * Gets the value for the first <code>length</code> chars of the given key.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(String key, int length) {
+		return (V) this.values[this.indexOf(key, length)];
+	}
+
+	/**
+	 * @return the number of mapped keys
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the slot for the given key prefix: the slot holding the key, or the empty slot where it
+	 * should be placed.
+	 */
+	private int indexOf(String key, int length) {
+		int mask = this.keys.length - 1;
+		int i = hash(key, length) & mask;
+		String current;
+		while ((current = this.keys[i]) != null) {
+			if (current.length() == length && current.regionMatches(true, 0, key, 0, length)) {
+				break;
+			}
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void resize() {
+		String[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new String[oldKeys.length * 2];
+		this.values = new Object[oldValues.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int j = this.indexOf(oldKeys[i], oldKeys[i].length());
+				this.keys[j] = oldKeys[i];
+				this.values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * A case insensitive hash for the first <code>length</code> chars of the given key.
+	 */
+	private static int hash(String key, int length) {
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + Character.toLowerCase(key.charAt(i));
+		}
+		// spreads the hash bits, as the HashMap does
+		h ^= (h >>> 20) ^ (h >>> 12);
+		return h ^ (h >>> 7) ^ (h >>> 4);
+	}
+}
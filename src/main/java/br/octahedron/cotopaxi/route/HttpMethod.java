@@ -0,0 +1,47 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+/**
+ * The HTTP methods supported by the {@link Router}.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public enum HttpMethod {
+
+	GET, POST, PUT, DELETE, HEAD, OPTIONS, TRACE;
+
+	// values() creates a new array on each call
+	private static final HttpMethod[] methods = values();
+
+	/**
+	 * Gets the {@link HttpMethod} for the given method name, ignoring case.
+	 * 
+	 * @param method
+	 *            the method name. E.g.: get, POST
+	 * @return the {@link HttpMethod}, or <code>null</code> if the given name isn't a supported
+	 *         method.
+	 */
+	public static HttpMethod get(String method) {
+		for (HttpMethod httpMethod : methods) {
+			if (httpMethod.name().equalsIgnoreCase(method)) {
+				return httpMethod;
+			}
+		}
+		return null;
+	}
+}
@@ -19,6 +19,10 @@ package br.octahedron.cotopaxi.route;
 /**
  * Indicates an 404 error.
  * 
+ * It doesn't fill its stack trace: it's a expected condition, caused by the request, not by the
+ * application, so the stack trace is useless and too expensive when there're many not found
+ * requests.
+ * 
  * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
  */
 public class NotFoundExeption extends Exception {
@@ -33,6 +37,16 @@ public class NotFoundExeption extends Exception {
 		this.method = method;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Throwable#fillInStackTrace()
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
 	/**
 	 * @return the url
 	 */
@@ -46,7 +60,4 @@ public class NotFoundExeption extends Exception {
 	public String getMethod() {
 		return method;
 	}
-
-
-
 }
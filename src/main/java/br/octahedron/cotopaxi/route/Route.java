@@ -0,0 +1,112 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+import javax.servlet.http.HttpServletRequest;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+
+/**
+ * A mapped route. It holds the route's {@link ControllerDescriptor} and the information about the
+ * route URL computed when the route is added: if it's static or dynamic and, for dynamic routes,
+ * the variables names by segment position.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class Route {
+
+	private static final String[] NO_VALUES = new String[0];
+
+	private ControllerDescriptor controllerDesc;
+	// variable name by segment position, null for static segments
+	private String[] variables;
+	private boolean dynamic;
+	// the match for static routes, which is always the same
+	private RouteMatch staticMatch;
+
+	Route(ControllerDescriptor controllerDesc, String[] segments) {
+		this.controllerDesc = controllerDesc;
+		this.variables = new String[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (Router.isVariable(segment)) {
+				this.variables[i] = segment.substring(1, segment.length() - 1);
+				this.dynamic = true;
+			}
+		}
+		if (!this.dynamic) {
+			this.staticMatch = new RouteMatch(this, NO_VALUES);
+		}
+	}
+
+	/**
+	 * @return the route's {@link ControllerDescriptor}
+	 */
+	ControllerDescriptor getControllerDescriptor() {
+		return this.controllerDesc;
+	}
+
+	/**
+	 * @return <code>true</code> if this route has variables, <code>false</code> otherwise
+	 */
+	boolean isDynamic() {
+		return this.dynamic;
+	}
+
+	/**
+	 * Gets a {@link RouteMatch} for this route.
+	 * 
+	 * @param values
+	 *            the requested URL segments, which contains the variables values. It's ignored
+	 *            for static routes.
+	 */
+	RouteMatch match(String[] values) {
+		return (this.dynamic) ? new RouteMatch(this, values) : this.staticMatch;
+	}
+
+	/**
+	 * The result of a request routing: the matched {@link Route} and the variables values.
+	 */
+	static class RouteMatch {
+		private Route route;
+		private String[] values;
+
+		private RouteMatch(Route route, String[] values) {
+			this.route = route;
+			this.values = values;
+		}
+
+		/**
+		 * @return the matched route's {@link ControllerDescriptor}
+		 */
+		ControllerDescriptor getControllerDescriptor() {
+			return this.route.controllerDesc;
+		}
+
+		/**
+		 * Binds the URL variables values to the given request, as attributes.
+		 */
+		void bind(HttpServletRequest request) {
+			String[] variables = this.route.variables;
+			for (int i = 0; i < this.values.length; i++) {
+				if (variables[i] != null) {
+					request.setAttribute(variables[i], this.values[i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+/**
+ * A node of the dynamic routes trie. Each node represents an URL segment: static segments are
+ * stored as children, indexed by the segment itself, and the <code>{var}</code> segments are
+ * stored as a single wildcard child. There's a trie for each HTTP method.
+ *
+ * Lookup walks the requested URL segment by segment, so its cost depends on the URL depth, not
+ * on the number of mapped routes. Static segments are always tried before the wildcard one.
+ *
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class RouteNode {
+
+	private CaseInsensitiveMap<RouteNode> children = new CaseInsensitiveMap<RouteNode>();
+	private RouteNode wildcard;
+	// the route ending at this node, if any
+	private Route route;
+
+	/**
+	 * Adds a route to this node's sub-trie.
+	 *
+	 * @param segments
+	 *            the mapping URL segments
+	 * @param index
+	 *            the current segment index
+	 * @param route
+	 *            the {@link Route} to be mapped
+	 */
+	void add(String[] segments, int index, Route route) {
+		if (index == segments.length) {
+			this.route = route;
+		} else {
+			String segment = segments[index];
+			RouteNode child;
+			if (Router.isVariable(segment)) {
+				if (this.wildcard == null) {
+					this.wildcard = new RouteNode();
+				}
+				child = this.wildcard;
+			} else {
+				child = this.children.get(segment);
+				if (child == null) {
+					child = new RouteNode();
+					this.children.put(segment, child);
+				}
+			}
+			child.add(segments, index + 1, route);
+		}
+	}
+
+	/**
+	 * Finds the {@link Route} for the given URL segments. Static segments are matched ignoring
+	 * case, while the variables values keep the requested case.
+	 *
+	 * @param segments
+	 *            the requested URL segments
+	 * @param index
+	 *            the current segment index
+	 * @return the {@link Route}, or <code>null</code> if there's no route for the given segments.
+	 */
+	Route find(String[] segments, int index) {
+		if (index == segments.length) {
+			return this.route;
+		}
+		String segment = segments[index];
+		Route result = null;
+		RouteNode child = this.children.get(segment);
+		if (child != null) {
+			result = child.find(segments, index + 1);
+		}
+		if (result == null && this.wildcard != null && Router.isVariableValue(segment)) {
+			result = this.wildcard.find(segments, index + 1);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+
+/**
+ * An immutable set of routes: the mapped {@link ControllerDescriptor}s and the
+ * {@link RouteTable}s built from them, one for each {@link HttpMethod}.
+ * 
+ * A snapshot is fully built before being published by the {@link Router}, and is never changed
+ * after that (except by the routes caches, which are thread-safe). So, requests can read it
+ * without any lock, and a new set of routes is applied by publishing a new snapshot.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class RouteSnapshot {
+
+	private List<ControllerDescriptor> routes;
+	// the routes tables, indexed by HttpMethod ordinal
+	private RouteTable[] tables = new RouteTable[HttpMethod.values().length];
+
+	/**
+	 * Builds a snapshot for the given routes.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if some route HTTP method isn't supported
+	 */
+	RouteSnapshot(Collection<ControllerDescriptor> routes) {
+		this.routes = Collections.unmodifiableList(new ArrayList<ControllerDescriptor>(routes));
+		for (HttpMethod method : HttpMethod.values()) {
+			this.tables[method.ordinal()] = new RouteTable(method);
+		}
+		for (ControllerDescriptor controllerDesc : this.routes) {
+			HttpMethod method = HttpMethod.get(controllerDesc.getHttpMethod());
+			if (method == null) {
+				throw new IllegalArgumentException("Unsupported HTTP method " + controllerDesc.getHttpMethod() + " for route "
+						+ controllerDesc.getUrl());
+			}
+			String[] segments = Router.getSegments(controllerDesc.getUrl());
+			this.tables[method.ordinal()].add(new Route(controllerDesc, segments), segments);
+		}
+	}
+
+	/**
+	 * @return the mapped routes
+	 */
+	List<ControllerDescriptor> getRoutes() {
+		return this.routes;
+	}
+
+	/**
+	 * @return the {@link RouteTable} for the given method
+	 */
+	RouteTable getTable(HttpMethod method) {
+		return this.tables[method.ordinal()];
+	}
+
+	/**
+	 * @return all the {@link RouteTable}s
+	 */
+	RouteTable[] getTables() {
+		return this.tables;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.ROUTE_CACHE_SIZE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
+import br.octahedron.cotopaxi.route.Route.RouteMatch;
+import br.octahedron.util.LRUCache;
+import br.octahedron.util.Log;
+
+/**
+ * The routes for a single {@link HttpMethod}: the static routes map, the dynamic routes trie and
+ * the cache of requested dynamic URLs.
+ * 
+ * Lookups use the requested URL as is: static routes are found ignoring case and the trailing
+ * '/' without creating any new String, and the cache is keyed by the requested URL itself.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class RouteTable {
+
+	private static final Log log = new Log(RouteTable.class);
+	private static final String ROOT = "/";
+
+	private HttpMethod method;
+	// static URLS vs RouteMatch
+	private CaseInsensitiveMap<RouteMatch> staticURLs = new CaseInsensitiveMap<RouteMatch>();
+	// dynamic URLS trie
+	private RouteNode dynamicURLs = new RouteNode();
+	// Cached URLS vs RouteMatch - lazily created, after configuration be loaded
+	private volatile LRUCache<String, RouteMatch> cachedURLs;
+
+	RouteTable(HttpMethod method) {
+		this.method = method;
+	}
+
+	/**
+	 * Adds a route to this table.
+	 * 
+	 * @param route
+	 *            the route
+	 * @param segments
+	 *            the route URL segments
+	 */
+	void add(Route route, String[] segments) {
+		if (route.isDynamic()) {
+			this.dynamicURLs.add(segments, 1, route);
+		} else {
+			String url = route.getControllerDescriptor().getUrl();
+			this.staticURLs.put(url.substring(0, keyLength(url)), route.match(segments));
+		}
+	}
+
+	/**
+	 * Finds the route for the given URL.
+	 * 
+	 * @return the {@link RouteMatch} for the given URL, or <code>null</code> if there's no route
+	 *         for the URL.
+	 */
+	RouteMatch find(String url) {
+		int length = keyLength(url);
+		RouteMatch result = (length != 0) ? this.staticURLs.get(url, length) : this.staticURLs.get(ROOT);
+		if (result == null) {
+			// only dynamic URLs are cached, static ones are already a single lookup. The key keeps
+			// the URL case, as the match holds the variables values.
+			LRUCache<String, RouteMatch> cache = this.getCache();
+			result = cache.get(url);
+			if (result == null) {
+				String[] segments = Router.getSegments(url);
+				Route route = this.dynamicURLs.find(segments, 1);
+				if (route != null) {
+					result = route.match(segments);
+					cache.put(url, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the routes cache, creating it if necessary.
+	 */
+	LRUCache<String, RouteMatch> getCache() {
+		LRUCache<String, RouteMatch> cache = this.cachedURLs;
+		if (cache == null) {
+			synchronized (this) {
+				cache = this.cachedURLs;
+				if (cache == null) {
+					int size = Integer.parseInt(getProperty(ROUTE_CACHE_SIZE));
+					log.info("Creating %s routes cache with size %d", this.method, size);
+					cache = new LRUCache<String, RouteMatch>(size);
+					this.cachedURLs = cache;
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Gets the length of the URL part used as key, it means, the URL without the trailing '/'.
+	 */
+	private static int keyLength(String url) {
+		int length = url.length();
+		return (length > 1 && url.charAt(length - 1) == '/') ? length - 1 : length;
+	}
+}
@@ -16,17 +16,18 @@
  */
 package br.octahedron.cotopaxi.route;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.xml.ws.RequestWrapper;
 
 import br.octahedron.cotopaxi.controller.Controller;
 import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+import br.octahedron.cotopaxi.route.Route.RouteMatch;
 import br.octahedron.util.Log;
 
 
@@ -40,75 +41,126 @@ public class Router {
 	/*
 	 * ** Mapping Workflow
 	 * 
-	 * First, it creates a key for the url/method pair. Then, it looks for a mapping at the
-	 * cachedURLs map. If nothing is found at cache, check for the key at the static map. If it
-	 * fails one more time, look for it the dynamicURLs map.
+	 * When a route is added, its URL is checked, only once, to know if it's static or dynamic and
+	 * which segments are variables (see Route). Routes are indexed by HTTP method: there's a
+	 * RouteTable for each HttpMethod.
 	 * 
-	 * This dynamicURLs map consists of a regex/ModelMapping map. The search on this map is
-	 * iterative, and at worse case it can take O(n) attempts. On each attempt, the url is checked
-	 * using the regex and, if matches, return the mapped ModelMaping.
+	 * The RouteTables are held by an immutable RouteSnapshot. Adding or replacing routes builds a
+	 * new snapshot, out of the request path, and atomically publishes it. So, requests never lock
+	 * and always see a complete set of routes, and routes can be reloaded at runtime.
 	 * 
-	 * If no ModelMapping is found for the given url/method pair, an NotFoundException is thrown.
+	 * To route a request, first, it gets the current snapshot's RouteTable for the request
+	 * method. Then, it looks for
+	 * the URL at the table's static map, ignoring case and trailing '/', without creating new
+	 * Strings. If nothing is found, it looks for a match at the table's cachedURLs, a bounded LRU
+	 * cache (see ROUTE_CACHE_SIZE property) keyed by the requested URL. If it fails one more time,
+	 * look for it the table's dynamicURLs trie and caches the result.
+	 * 
+	 * The dynamic URLs are stored in a segment trie (see RouteNode), where static segments are
+	 * hash lookups and {var} segments are wildcards. The search walks the url segments, so it
+	 * takes O(d) steps, where d is the url depth, no matter how many routes are mapped. The
+	 * requested segments are kept with the match, so the variables values are bound to the
+	 * request without any further parsing.
+	 * 
+	 * If no route is found for the given url/method pair, an NotFoundException is thrown by
+	 * route(request). The lookup(request) method does the same, but it returns null instead, so
+	 * not found requests can be handled without the exception's cost.
 	 */
 
 	public static final String NOT_FOUND_URL = "notFoundUrl";
 	public static final String NOT_FOUND_METHOD = "notFoundMethod";
 
-	private static final String METHOD_SEPARATOR = "%%";
 	private static final String SEPARATOR = "/";
 	// Log
 	private static final Log log = new Log(Router.class);
-	/* pattern for non static urls */
-	private static final Pattern nonStaticPattern = Pattern.compile("^((/[a-zA-Z_0-9]+)*(/\\{[a-zA-Z_0-9]+\\})+(/[a-zA-Z_0-9]+)*)+/?$");
 	/* pattern for variables */
 	private static final Pattern variablePattern = Pattern.compile("\\{[a-zA-Z_0-9]+\\}");
-	private static final String acceptableVariableValues = "[a-zA-Z_0-9@%.-]+";
-	
-
-	// Cached URLS vs ControllerDescriptor
-	private Map<String, ControllerDescriptor> cachedURLs = new HashMap<String, ControllerDescriptor>();
-	// static URLS vs ControllerDescriptor
-	private Map<String, ControllerDescriptor> staticURLs = new HashMap<String, ControllerDescriptor>();
-	// dynamic URLS vs ControllerDescriptor
-	private Map<String, ControllerDescriptor> dynamicURLs = new HashMap<String, ControllerDescriptor>();
-	// reverse Map: ControllerDescriptor vs. Mapping URL
-	private Map<ControllerDescriptor, String> urlRoute = new HashMap<ControllerDescriptor, String>();
+	/* acceptable chars, besides letters and digits, for variables values */
+	private static final String acceptableVariableChars = "_@%.-";
+
+	// the current routes
+	private final AtomicReference<RouteSnapshot> snapshot = new AtomicReference<RouteSnapshot>(new RouteSnapshot(
+			Collections.<ControllerDescriptor> emptyList()));
 
 	/**
 	 * Adds a new route
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the route HTTP method isn't supported
 	 */
 	public void addRoute(ControllerDescriptor controllerDesc) {
-		String url = controllerDesc.getUrl();
-		String method = controllerDesc.getHttpMethod();
-		log.info("Adding route for %s %s", method, url);
-		this.urlRoute.put(controllerDesc, url);
-		if (this.isStaticURL(url)) {
-			this.staticURLs.put(this.getURLKey(url, method), controllerDesc);
-		} else {
-			// replace all the {var} to create a url regex and adds it to the dynamicUrlsMap
-			String urlRegex = this.generateRegex(url);
-			this.dynamicURLs.put(this.getURLKey(urlRegex, method), controllerDesc);
+		this.addRoutes(Collections.singleton(controllerDesc));
+	}
+
+	/**
+	 * Adds the given routes to the current ones. The new routes are published at once.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if some route HTTP method isn't supported. In such case, no route is added.
+	 */
+	public synchronized void addRoutes(Collection<ControllerDescriptor> routes) {
+		List<ControllerDescriptor> all = new ArrayList<ControllerDescriptor>(this.snapshot.get().getRoutes());
+		for (ControllerDescriptor controllerDesc : routes) {
+			log.info("Adding route for %s %s", controllerDesc.getHttpMethod(), controllerDesc.getUrl());
+			all.add(controllerDesc);
 		}
+		this.snapshot.set(new RouteSnapshot(all));
 	}
 
 	/**
-	 * Routes a request to a controller.
+	 * Replaces all the current routes by the given ones. Requests being routed while the routes
+	 * are replaced use the old or the new routes, but never a mix of both.
+	 * 
+	 * Routes caches are discarded along with the old routes.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if some route HTTP method isn't supported. In such case, the current routes are
+	 *             kept.
+	 */
+	public synchronized void replaceRoutes(Collection<ControllerDescriptor> routes) {
+		log.info("Replacing routes: %d routes", routes.size());
+		this.snapshot.set(new RouteSnapshot(routes));
+	}
+
+	/**
+	 * @return the current routes
+	 */
+	public Collection<ControllerDescriptor> getRoutes() {
+		return this.snapshot.get().getRoutes();
+	}
+
+	/**
+	 * Routes a request to a controller. If the controller is mapped by a dynamic URL, the URL
+	 * variables are set as request attributes.
 	 * 
 	 * @return The {@link ControllerDescriptor} that describes the controller for the given request.
 	 * @throws NotFoundExeption
 	 *             If there's controller for the given url
 	 */
 	public ControllerDescriptor route(HttpServletRequest request) throws NotFoundExeption {
-		String url = request.getRequestURI().toLowerCase();
-		String method = request.getMethod().toLowerCase();
-		ControllerDescriptor result = this.findController(url, method);
-		log.debug("Controller for %s %s founded: %s", method, url, result.getControllerName());
-		
-		String routeURL = this.urlRoute.get(result);
-		if (!this.isStaticURL(routeURL)) {
-			this.extractURLParameters(routeURL, request);
-		}
+		String url = request.getRequestURI();
+		String method = request.getMethod();
+		return this.bind(this.findRoute(url, method), request, url, method);
+	}
 
+	/**
+	 * Routes a request to a controller, as {@link Router#route(HttpServletRequest)} does, but
+	 * without throwing an exception if there's no controller for the request.
+	 * 
+	 * @return The {@link ControllerDescriptor} that describes the controller for the given request,
+	 *         or <code>null</code> if there's no controller for the given url/method.
+	 */
+	public ControllerDescriptor lookup(HttpServletRequest request) {
+		String url = request.getRequestURI();
+		String method = request.getMethod();
+		RouteMatch match = this.match(url, method);
+		return (match != null) ? this.bind(match, request, url, method) : null;
+	}
+
+	private ControllerDescriptor bind(RouteMatch match, HttpServletRequest request, String url, String method) {
+		ControllerDescriptor result = match.getControllerDescriptor();
+		log.debug("Controller for %s %s founded: %s", method, url, result.getControllerName());
+		match.bind(request);
 		return result;
 	}
 
@@ -116,105 +168,100 @@ public class Router {
 	 * Maps the given URL/Method to a {@link Controller} class
 	 * 
 	 * @param url
-	 *            the URL
+	 *            the requested URL
 	 * @param method
-	 *            the {@link HTTPMethod}.
-	 * @return The {@link Controller} class to handler the request
-	 * @throws PageNotFoundExeption
-	 *             If no {@link MetadataHandler} is found for the given URL/{@link HTTPMethod} pair
+	 *            the HTTP method, in any case.
+	 * @return The {@link RouteMatch} for the given URL
+	 * @throws NotFoundExeption
+	 *             If no {@link Route} is found for the given URL/method pair
 	 */
-	protected ControllerDescriptor findController(String url, String method) throws NotFoundExeption {
-		ControllerDescriptor result;
-
-		String key = this.getURLKey(url, method);
-		if (this.cachedURLs.containsKey(key)) {
-			result = this.cachedURLs.get(key);
-		} else if (this.staticURLs.containsKey(key)) {
-			result = this.staticURLs.get(key);
-		} else {
-			result = this.findDynamicURL(key);
-		}
-
-		// cache result and return
+	protected RouteMatch findRoute(String url, String method) throws NotFoundExeption {
+		RouteMatch result = this.match(url, method);
 		if (result != null) {
-			this.cachedURLs.put(key, result);
 			return result;
 		} else {
-			throw new NotFoundExeption(url, method);
+			throw new NotFoundExeption(url.toLowerCase(), method.toLowerCase());
 		}
 	}
 
 	/**
-	 * Extracts the dynamic request parameters on the URL. It checks the mapping URL pattern and the
-	 * accessed URL and maps the parameters, setting it on the {@link RequestWrapper}.
+	 * Maps the given URL/Method to a {@link Controller} class
+	 * 
+	 * @param url
+	 *            the requested URL
+	 * @param method
+	 *            the HTTP method, in any case.
+	 * @return The {@link RouteMatch} for the given URL, or <code>null</code> if no {@link Route}
+	 *         is found for the given URL/method pair
 	 */
-	private void extractURLParameters(String routeURL, HttpServletRequest request) {
-		String[] mappingURLTokens = routeURL.split(SEPARATOR);
-		String[] requestURLTokens = request.getRequestURI().split(SEPARATOR);
-		for (int i = 1; i < mappingURLTokens.length; i++) {
-			Matcher m = variablePattern.matcher(mappingURLTokens[i]);
-			if (m.matches()) {
-				String attName = mappingURLTokens[i];
-				attName = attName.substring(1, attName.length() - 1);
-				String value = requestURLTokens[i];
-				request.setAttribute(attName, value);
-			}
-		}
+	protected RouteMatch match(String url, String method) {
+		HttpMethod httpMethod = HttpMethod.get(method);
+		return (httpMethod != null) ? this.snapshot.get().getTable(httpMethod).find(url) : null;
 	}
 
 	/**
-	 * Finds the Controller for a given URL, if this URL represents a dynamic URL.
-	 * 
-	 * @param key
-	 *            the URL key, generated using the getURLKey
-	 * 
-	 * @return The {@link Controller} class for the given URL, if exists, or <code>null</code>
-	 *         otherwise.
+	 * @return the number of requests resolved by the current routes caches
 	 */
-	private ControllerDescriptor findDynamicURL(String key) {
-		ControllerDescriptor result = null;
-		for (Entry<String, ControllerDescriptor> entry : this.dynamicURLs.entrySet()) {
-			if (key.matches(entry.getKey())) {
-				result = entry.getValue();
-				break;
-			}
+	public long getCacheHits() {
+		long hits = 0;
+		for (RouteTable table : this.snapshot.get().getTables()) {
+			hits += table.getCache().hits();
 		}
-		return result;
+		return hits;
 	}
 
 	/**
-	 * Gets the key for a given URL and method. This key is used by the maps.
+	 * @return the number of requests not resolved by the current routes caches
 	 */
-	private String getURLKey(String url, String method) {
-		if (url.equals("")) {
-			url = "/";
+	public long getCacheMisses() {
+		long misses = 0;
+		for (RouteTable table : this.snapshot.get().getTables()) {
+			misses += table.getCache().misses();
 		}
-		if (url.length() > 1 && url.endsWith("/")) {
-			url = url.substring(0, url.length() - 1);
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries evicted from the current routes caches
+	 */
+	public long getCacheEvictions() {
+		long evictions = 0;
+		for (RouteTable table : this.snapshot.get().getTables()) {
+			evictions += table.getCache().evictions();
 		}
-		return url + METHOD_SEPARATOR + method;
+		return evictions;
 	}
 
 	/**
-	 * Generates a regex to recognize the given dynamic URL.
-	 * 
-	 * @param url
-	 *            the dynamicUrl to be transformed to a regex.
-	 * @return a regex for the given URL.
+	 * Splits the given URL into segments. As URLs starts with a '/', the first segment is always
+	 * blank.
 	 */
-	private String generateRegex(String url) {
-		return variablePattern.matcher(url).replaceAll(Matcher.quoteReplacement(acceptableVariableValues));
+	static String[] getSegments(String url) {
+		return url.split(SEPARATOR);
 	}
 
 	/**
-	 * Checks if the given Mapping URL is a static URL. This not check if a requested URL is static
-	 * or not, only URLs from Mappings.
-	 * 
-	 * @param url
-	 *            the URL to be checked.
-	 * @return <code>true</code> if the URL is static, <code>false</code> otherwise
+	 * Checks if the given mapping URL segment is a variable, it means, a <code>{var}</code>
+	 * segment.
 	 */
-	private boolean isStaticURL(String url) {
-		return !nonStaticPattern.matcher(url).matches();
+	static boolean isVariable(String segment) {
+		return variablePattern.matcher(segment).matches();
+	}
+
+	/**
+	 * Checks if the given requested URL segment is an acceptable value for a variable.
+	 */
+	static boolean isVariableValue(String segment) {
+		int length = segment.length();
+		if (length == 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = segment.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || acceptableVariableChars.indexOf(c) >= 0)) {
+				return false;
+			}
+		}
+		return true;
 	}
 }
@@ -0,0 +1,262 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.COMPRESSION_THRESHOLD;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * An {@link HttpOutputStreamBuilder} that compresses the response using gzip or deflate encoding.
+ * 
+ * The content is buffered until it reaches the COMPRESSION_THRESHOLD size: smaller responses
+ * aren't compressed, since it doesn't pay off. Responses which content type is already
+ * compressed, such as images, or which already have a Content-Encoding, aren't compressed too.
+ * 
+ * The {@link Deflater}s are pooled, since creating them is expensive.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class CompressionOutputStreamBuilder implements HttpOutputStreamBuilder {
+
+	public static final CompressionOutputStreamBuilder GZIP = new CompressionOutputStreamBuilder("gzip", true);
+	public static final CompressionOutputStreamBuilder DEFLATE = new CompressionOutputStreamBuilder("deflate", false);
+
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final int THRESHOLD = Integer.parseInt(getProperty(COMPRESSION_THRESHOLD));
+	private static final int POOL_SIZE = 32;
+	private static final int BUFFER_SIZE = 8192;
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private final String encoding;
+	private final boolean gzip;
+	private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<Deflater>(POOL_SIZE);
+
+	private CompressionOutputStreamBuilder(String encoding, boolean gzip) {
+		this.encoding = encoding;
+		this.gzip = gzip;
+	}
+
+	/**
+	 * @return the encoding name, as used at Content-Encoding header
+	 */
+	public String getEncoding() {
+		return this.encoding;
+	}
+
+	/**
+	 * Without the {@link HttpServletResponse} the Content-Encoding can't be set, so it doesn't
+	 * compress anything.
+	 */
+	@Override
+	public OutputStream createOutputStream(OutputStream servletOutput) {
+		return servletOutput;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.view.HttpOutputStreamBuilder#createOutputStream(java.io.OutputStream,
+	 * javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public OutputStream createOutputStream(OutputStream servletOutput, HttpServletResponse servletResponse) {
+		return new CompressionOutputStream(servletOutput, servletResponse);
+	}
+
+	/**
+	 * Checks if the given content type is worth to be compressed: text, json, xml and javascript
+	 * are, while images, videos and archives, which are already compressed, aren't.
+	 */
+	public static boolean isCompressible(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		String type = contentType.toLowerCase();
+		return type.startsWith("text/") || type.contains("json") || type.contains("xml") || type.contains("javascript");
+	}
+
+	private Deflater borrow() {
+		Deflater deflater = this.deflaters.poll();
+		return (deflater != null) ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, this.gzip);
+	}
+
+	/**
+	 * @return the number of pooled {@link Deflater}s. Used by tests.
+	 */
+	int idle() {
+		return this.deflaters.size();
+	}
+
+	private void giveBack(Deflater deflater) {
+		deflater.reset();
+		if (!this.deflaters.offer(deflater)) {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * The compressing {@link OutputStream}. It decides whether compress or not the content once
+	 * the threshold is reached or the stream is closed. Its {@link Deflater} is given back once
+	 * it's closed or aborted.
+	 */
+	private class CompressionOutputStream extends OutputStream implements Abortable {
+
+		private final OutputStream out;
+		private final HttpServletResponse response;
+		private byte[] pending = new byte[Math.max(THRESHOLD, 1)];
+		private int count = 0;
+		private boolean decided = false;
+		private Deflater deflater;
+		private CRC32 crc;
+		private byte[] buffer;
+		private byte[] single;
+
+		public CompressionOutputStream(OutputStream out, HttpServletResponse response) {
+			this.out = out;
+			this.response = response;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.single == null) {
+				this.single = new byte[1];
+			}
+			this.single[0] = (byte) b;
+			this.write(this.single, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (!this.decided) {
+				if (this.count + len <= THRESHOLD) {
+					System.arraycopy(b, off, this.pending, this.count, len);
+					this.count += len;
+					return;
+				}
+				this.decide(true);
+			}
+			if (this.deflater != null) {
+				this.deflate(b, off, len);
+			} else {
+				this.out.write(b, off, len);
+			}
+		}
+
+		/**
+		 * While the compression isn't decided yet, the content is kept buffered.
+		 */
+		@Override
+		public void flush() throws IOException {
+			if (this.decided) {
+				this.out.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (!this.decided) {
+					this.decide(false);
+				}
+				if (this.deflater != null) {
+					this.deflater.finish();
+					while (!this.deflater.finished()) {
+						int n = this.deflater.deflate(this.buffer, 0, this.buffer.length);
+						this.out.write(this.buffer, 0, n);
+					}
+					if (CompressionOutputStreamBuilder.this.gzip) {
+						this.writeInt((int) this.crc.getValue());
+						this.writeInt(this.deflater.getTotalIn());
+					}
+				}
+			} finally {
+				this.abort();
+			}
+			this.out.close();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see br.octahedron.cotopaxi.view.Abortable#abort()
+		 */
+		@Override
+		public void abort() {
+			this.decided = true;
+			this.pending = null;
+			if (this.deflater != null) {
+				giveBack(this.deflater);
+				this.deflater = null;
+			}
+		}
+
+		/**
+		 * Decides whether the content will be compressed, adjusting the response headers, and
+		 * writes the pending content.
+		 */
+		private void decide(boolean overThreshold) throws IOException {
+			this.decided = true;
+			boolean compressible = isCompressible(this.response.getContentType());
+			if (compressible) {
+				this.response.addHeader("Vary", "Accept-Encoding");
+			}
+			if (overThreshold && compressible && !this.response.containsHeader(CONTENT_ENCODING)) {
+				this.response.setHeader(CONTENT_ENCODING, CompressionOutputStreamBuilder.this.encoding);
+				this.deflater = borrow();
+				this.buffer = new byte[BUFFER_SIZE];
+				if (CompressionOutputStreamBuilder.this.gzip) {
+					this.crc = new CRC32();
+					this.out.write(GZIP_HEADER);
+				}
+				this.deflate(this.pending, 0, this.count);
+			} else {
+				this.out.write(this.pending, 0, this.count);
+			}
+			this.pending = null;
+		}
+
+		private void deflate(byte[] b, int off, int len) throws IOException {
+			if (this.crc != null) {
+				this.crc.update(b, off, len);
+			}
+			this.deflater.setInput(b, off, len);
+			while (!this.deflater.needsInput()) {
+				int n = this.deflater.deflate(this.buffer, 0, this.buffer.length);
+				this.out.write(this.buffer, 0, n);
+			}
+		}
+
+		/**
+		 * Writes an int in little endian order, as required by gzip trailer
+		 */
+		private void writeInt(int value) throws IOException {
+			this.out.write(value & 0xff);
+			this.out.write((value >> 8) & 0xff);
+			this.out.write((value >> 16) & 0xff);
+			this.out.write((value >> 24) & 0xff);
+		}
+	}
+}
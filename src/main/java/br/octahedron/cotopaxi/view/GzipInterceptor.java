@@ -0,0 +1,99 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import br.octahedron.cotopaxi.interceptor.TemplateInterceptor;
+import br.octahedron.cotopaxi.view.response.RenderableResponse;
+import br.octahedron.cotopaxi.view.response.TemplateResponse;
+
+/**
+ * A {@link TemplateInterceptor} that compresses the template, JSON and text responses, if the
+ * client accepts it. It negotiates the encoding using the request's Accept-Encoding header,
+ * preferring gzip over deflate.
+ * 
+ * To enable it, add it to the interceptors section of application configuration file. The
+ * compression itself is done by {@link CompressionOutputStreamBuilder}.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class GzipInterceptor extends TemplateInterceptor {
+
+	/*
+	 * (non-Javadoc)
+	 */
+	@Override
+	public void preRender(TemplateResponse response) {
+		this.preRenderResponse(response);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 */
+	@Override
+	public void preRenderResponse(RenderableResponse response) {
+		CompressionOutputStreamBuilder builder = negotiate(this.header("Accept-Encoding"));
+		if (builder != null && response.getOutputStreamBuilder() == null) {
+			response.setOutputStreamBuilder(builder);
+		}
+	}
+
+	/**
+	 * Gets the {@link CompressionOutputStreamBuilder} for the given Accept-Encoding header value.
+	 * 
+	 * @return the {@link CompressionOutputStreamBuilder}, or <code>null</code> if the client
+	 *         doesn't accept a compressed response.
+	 */
+	static CompressionOutputStreamBuilder negotiate(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		boolean gzip = false;
+		boolean deflate = false;
+		boolean gzipRefused = false;
+		boolean any = false;
+		for (String token : acceptEncoding.split(",")) {
+			String[] parts = token.split(";");
+			String name = parts[0].trim().toLowerCase();
+			boolean accepted = true;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+					} catch (NumberFormatException ex) {
+						accepted = false;
+					}
+				}
+			}
+			if (name.equals("gzip") || name.equals("x-gzip")) {
+				gzip = accepted;
+				gzipRefused = !accepted;
+			} else if (name.equals("deflate")) {
+				deflate = accepted;
+			} else if (name.equals("*")) {
+				any = accepted;
+			}
+		}
+		if (gzip || (any && !gzipRefused)) {
+			return CompressionOutputStreamBuilder.GZIP;
+		} else if (deflate) {
+			return CompressionOutputStreamBuilder.DEFLATE;
+		} else {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import java.io.Writer;
+
+/**
+ * A {@link Writer} which writes to memory, like a {@link java.io.StringWriter}, but reusable:
+ * each thread has a pooled writer, and its buffer is kept from a rendering to another, so it
+ * doesn't grow again for each rendering.
+ * 
+ * Writers are got using {@link MemoryWriter#open()} and should be given back to the pool using
+ * {@link MemoryWriter#release()}, once its content was read. It isn't thread-safe.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class MemoryWriter extends Writer {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	// buffers bigger than it aren't kept, to not hold too much memory per thread
+	private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+	private static final ThreadLocal<MemoryWriter> pool = new ThreadLocal<MemoryWriter>();
+
+	private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+	private boolean inUse = false;
+
+	private MemoryWriter() {
+	}
+
+	/**
+	 * Gets an empty writer. It's the current thread's pooled writer, unless it's already in use,
+	 * e.g., by a nested rendering.
+	 */
+	public static MemoryWriter open() {
+		MemoryWriter writer = pool.get();
+		if (writer == null) {
+			writer = new MemoryWriter();
+			pool.set(writer);
+		} else if (writer.inUse) {
+			// the pooled writer is in use, so this one isn't pooled
+			writer = new MemoryWriter();
+		}
+		writer.inUse = true;
+		return writer;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#write(int)
+	 */
+	@Override
+	public void write(int c) {
+		this.buffer.append((char) c);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#write(char[], int, int)
+	 */
+	@Override
+	public void write(char[] cbuf, int off, int len) {
+		this.buffer.append(cbuf, off, len);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#write(java.lang.String, int, int)
+	 */
+	@Override
+	public void write(String str, int off, int len) {
+		this.buffer.append(str, off, off + len);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#flush()
+	 */
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * It does nothing: the content is still available until this writer is released.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * @return the written content
+	 */
+	@Override
+	public String toString() {
+		return this.buffer.toString();
+	}
+
+	/**
+	 * Discards the written content and gives this writer back to the pool.
+	 */
+	public void release() {
+		if (this.buffer.capacity() > MAX_POOLED_CAPACITY) {
+			this.buffer = new StringBuilder(INITIAL_CAPACITY);
+		} else {
+			this.buffer.setLength(0);
+		}
+		this.inUse = false;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A buffered {@link Writer} which encodes chars and writes them to an {@link OutputStream}. It
+ * does the same as a {@link java.io.BufferedWriter} over an {@link java.io.OutputStreamWriter},
+ * but it's reusable: each thread has a pooled writer, and its buffers and encoder are kept from a
+ * response to another.
+ * 
+ * Writers are got using {@link ResponseWriter#open(OutputStream, Charset, int)} and are given back
+ * to the pool once closed or released. A writer isn't thread-safe, and it shouldn't be used after
+ * closed.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ResponseWriter extends Writer {
+
+	private static final int MIN_BUFFER_SIZE = 16;
+	private static final ThreadLocal<ResponseWriter> pool = new ThreadLocal<ResponseWriter>();
+
+	private final Charset charset;
+	private final CharsetEncoder encoder;
+	private final char[] chars;
+	private final ByteBuffer bytes;
+	private int count = 0;
+	private OutputStream out;
+
+	private ResponseWriter(Charset charset, int bufferSize) {
+		bufferSize = Math.max(bufferSize, MIN_BUFFER_SIZE);
+		this.charset = charset;
+		this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.chars = new char[bufferSize];
+		this.bytes = ByteBuffer.allocate(bufferSize);
+	}
+
+	/**
+	 * Gets a writer for the given {@link OutputStream}. It's the current thread's pooled writer,
+	 * unless it's already in use, e.g., by a nested rendering.
+	 * 
+	 * @param out
+	 *            the {@link OutputStream} to write to
+	 * @param charset
+	 *            the {@link Charset} used to encode the chars
+	 * @param bufferSize
+	 *            the buffer size, in chars
+	 */
+	public static ResponseWriter open(OutputStream out, Charset charset, int bufferSize) {
+		ResponseWriter writer = pool.get();
+		if (writer != null && writer.out != null) {
+			// the pooled writer is in use, so this one isn't pooled
+			writer = new ResponseWriter(charset, bufferSize);
+		} else if (writer == null || !writer.charset.equals(charset) || writer.chars.length != Math.max(bufferSize, MIN_BUFFER_SIZE)) {
+			writer = new ResponseWriter(charset, bufferSize);
+			pool.set(writer);
+		}
+		writer.out = out;
+		return writer;
+	}
+
+	/**
+	 * @return the buffer size, in chars
+	 */
+	public int getBufferSize() {
+		return this.chars.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#write(int)
+	 */
+	@Override
+	public void write(int c) throws IOException {
+		if (this.count == this.chars.length) {
+			this.encode(false);
+		}
+		this.chars[this.count++] = (char) c;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#write(char[], int, int)
+	 */
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		while (len > 0) {
+			if (this.count == this.chars.length) {
+				this.encode(false);
+			}
+			int n = Math.min(len, this.chars.length - this.count);
+			System.arraycopy(cbuf, off, this.chars, this.count, n);
+			this.count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#write(java.lang.String, int, int)
+	 */
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		while (len > 0) {
+			if (this.count == this.chars.length) {
+				this.encode(false);
+			}
+			int n = Math.min(len, this.chars.length - this.count);
+			str.getChars(off, off + n, this.chars, this.count);
+			this.count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Writes content already encoded using this writer's charset, e.g., a cached page. The
+	 * buffered chars are written before it.
+	 */
+	public void writeEncoded(byte[] content, int off, int len) throws IOException {
+		this.encode(false);
+		this.drain();
+		this.out.write(content, off, len);
+	}
+
+	/**
+	 * @return the {@link Charset} used to encode the chars
+	 */
+	public Charset getCharset() {
+		return this.charset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Writer#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.encode(false);
+		this.drain();
+		this.out.flush();
+	}
+
+	/**
+	 * Writes everything is buffered, closes the {@link OutputStream} and gives this writer back to
+	 * the pool.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.out != null) {
+			try {
+				this.encode(true);
+				this.drain();
+				this.out.close();
+			} finally {
+				this.release();
+			}
+		}
+	}
+
+	/**
+	 * Gives this writer back to the pool, discarding anything buffered. It does nothing if the
+	 * writer is already closed.
+	 */
+	public void release() {
+		this.out = null;
+		this.count = 0;
+		this.bytes.clear();
+		this.encoder.reset();
+	}
+
+	/**
+	 * Encodes the buffered chars. The chars which can't be encoded yet, such as half of a surrogate
+	 * pair, are kept at buffer.
+	 */
+	private void encode(boolean endOfInput) throws IOException {
+		CharBuffer in = CharBuffer.wrap(this.chars, 0, this.count);
+		CoderResult result = this.encoder.encode(in, this.bytes, endOfInput);
+		while (result.isOverflow()) {
+			this.drain();
+			result = this.encoder.encode(in, this.bytes, endOfInput);
+		}
+		if (endOfInput) {
+			while (this.encoder.flush(this.bytes).isOverflow()) {
+				this.drain();
+			}
+		}
+		int remaining = in.remaining();
+		if (remaining > 0) {
+			System.arraycopy(this.chars, in.position(), this.chars, 0, remaining);
+		}
+		this.count = remaining;
+	}
+
+	/**
+	 * Writes the encoded bytes to the {@link OutputStream}
+	 */
+	private void drain() throws IOException {
+		if (this.bytes.position() > 0) {
+			this.out.write(this.bytes.array(), 0, this.bytes.position());
+			this.bytes.clear();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.parser.ParserTreeConstants;
+import org.apache.velocity.runtime.parser.node.ASTText;
+
+import br.octahedron.cotopaxi.view.ResponseWriter;
+
+/**
+ * A template's static text, already encoded. It replaces a Velocity's {@link ASTText} node, and
+ * when rendered to a {@link ResponseWriter} using the same charset, the encoded bytes are written
+ * directly, without encoding the text again.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class EncodedText extends ASTText {
+
+	private final char[] chars;
+	private final byte[] bytes;
+	private final Charset charset;
+
+	public EncodedText(ASTText text, Charset charset) throws IOException {
+		super(ParserTreeConstants.JJTTEXT);
+		// the text node doesn't use the context to render
+		StringWriter writer = new StringWriter();
+		text.render(null, writer);
+		String content = writer.toString();
+		this.chars = content.toCharArray();
+		this.bytes = content.getBytes(charset);
+		this.charset = charset;
+		this.setFirstToken(text.getFirstToken());
+		this.last = text.getLastToken();
+		this.templateName = text.getTemplateName();
+		this.rsvc = text.getRuntimeServices();
+		this.jjtSetParent(text.jjtGetParent());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.runtime.parser.node.ASTText#render(org.apache.velocity.context.InternalContextAdapter,
+	 * java.io.Writer)
+	 */
+	@Override
+	public boolean render(InternalContextAdapter context, Writer writer) throws IOException {
+		if (writer instanceof ResponseWriter && ((ResponseWriter) writer).getCharset().equals(this.charset)) {
+			((ResponseWriter) writer).writeEncoded(this.bytes, 0, this.bytes.length);
+		} else {
+			writer.write(this.chars);
+		}
+		return true;
+	}
+}
@@ -16,10 +16,10 @@
  */
 package br.octahedron.cotopaxi.view.render;
 
-import java.io.IOException;
 import java.io.Writer;
 
 import br.octahedron.util.Log;
+import flexjson.JSONException;
 import flexjson.JSONSerializer;
 
 /**
@@ -34,13 +34,17 @@ public class JSONRender {
 
 	private static final Log log = new Log(JSONRender.class);
 
+	/**
+	 * Renders the given object, writing it directly to the given writer, without building the
+	 * whole JSON document in memory.
+	 */
 	public void render(Object object, Writer writer) {
 		try {
-			writer.write(new JSONSerializer().prettyPrint(true).deepSerialize(object));
+			new JSONSerializer().prettyPrint(true).deepSerialize(object, writer);
 			log.debug("Written json in response writer");
-		} catch (IOException ex) {
+		} catch (JSONException ex) {
 			log.error(ex, "Impossible to parse objects into json format to be used on writer");
-			throw new RuntimeException(ex);
+			throw ex;
 		}
 	}
 }
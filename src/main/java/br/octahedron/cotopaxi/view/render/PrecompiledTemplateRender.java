@@ -0,0 +1,37 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+/**
+ * A {@link VelocityTemplateRender} which precompiles the templates' static text: it's encoded
+ * once, when the template is loaded, and written as bytes, so rendering a template is mostly
+ * writing pre-encoded chunks, and only the dynamic parts are interpreted.
+ * 
+ * To use it, set the TEMPLATE_RENDER property to this class. It works best with the templates
+ * cache enabled, and with TEMPLATE_PRELOAD, so templates are precompiled when the application
+ * starts.
+ * 
+ * @see PrecompilingResourceManager
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class PrecompiledTemplateRender extends VelocityTemplateRender {
+
+	public PrecompiledTemplateRender() {
+		super(PrecompilingResourceManager.class);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.RESPONSE_ENCODING;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.apache.velocity.runtime.resource.Resource;
+
+import br.octahedron.util.Log;
+
+/**
+ * A {@link StatsResourceManager} which precompiles the templates once they're loaded: it walks
+ * the template's syntax tree and replaces the static text nodes by {@link EncodedText} nodes,
+ * encoded using the RESPONSE_ENCODING charset.
+ * 
+ * It's public just because Velocity creates it by reflection.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class PrecompilingResourceManager extends StatsResourceManager {
+
+	private static final Log log = new Log(PrecompilingResourceManager.class);
+	private final Charset charset = Charset.forName(getProperty(RESPONSE_ENCODING));
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.view.render.StatsResourceManager#loadResource(java.lang.String, int, java.lang.String)
+	 */
+	@Override
+	protected Resource loadResource(String resourceName, int resourceType, String encoding) throws ResourceNotFoundException,
+			ParseErrorException {
+		return this.precompile(super.loadResource(resourceName, resourceType, encoding));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.view.render.StatsResourceManager#refreshResource(org.apache.velocity.runtime.resource.Resource, java.lang.String)
+	 */
+	@Override
+	protected Resource refreshResource(Resource resource, String encoding) throws ResourceNotFoundException, ParseErrorException {
+		return this.precompile(super.refreshResource(resource, encoding));
+	}
+
+	private Resource precompile(Resource resource) {
+		if (resource instanceof Template && resource.getData() instanceof SimpleNode) {
+			try {
+				int count = precompile((SimpleNode) resource.getData(), this.charset);
+				log.debug("Template %s precompiled: %d static text nodes encoded", resource.getName(), count);
+			} catch (IOException ex) {
+				throw new VelocityException("Unable to precompile template " + resource.getName(), ex);
+			}
+		}
+		return resource;
+	}
+
+	/**
+	 * Replaces the static text nodes under the given node by {@link EncodedText} nodes.
+	 * 
+	 * @return the number of replaced nodes
+	 */
+	static int precompile(SimpleNode node, Charset charset) throws IOException {
+		int count = 0;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			Node child = node.jjtGetChild(i);
+			if (child.getClass() == ASTText.class) {
+				node.jjtAddChild(new EncodedText((ASTText) child, charset), i);
+				count++;
+			} else if (child instanceof SimpleNode) {
+				count += precompile((SimpleNode) child, charset);
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+/**
+ * A {@link TemplateRender} which is able to load all the templates in advance, when the
+ * application starts, instead of on the first request for each template.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public interface Preloadable {
+
+	/**
+	 * Loads and parses all templates under the TEMPLATE_FOLDER.
+	 * 
+	 * @throws TemplateException
+	 *             if some template can't be loaded. Every template is tried anyway, and each
+	 *             failure is logged.
+	 */
+	public void preload() throws TemplateException;
+}
@@ -0,0 +1,90 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.ResourceManagerImpl;
+
+/**
+ * A Velocity resource manager which keeps {@link TemplateStats} about its cache. The
+ * {@link TemplateStats} is got from the engine's application attributes.
+ * 
+ * It's public just because Velocity creates it by reflection.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class StatsResourceManager extends ResourceManagerImpl {
+
+	static final String STATS_ATTRIBUTE = TemplateStats.class.getName();
+
+	private TemplateStats stats = new TemplateStats();
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.runtime.resource.ResourceManagerImpl#initialize(org.apache.velocity.runtime.RuntimeServices)
+	 */
+	@Override
+	public synchronized void initialize(RuntimeServices rs) {
+		super.initialize(rs);
+		Object stats = rs.getApplicationAttribute(STATS_ATTRIBUTE);
+		if (stats instanceof TemplateStats) {
+			this.stats = (TemplateStats) stats;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.runtime.resource.ResourceManagerImpl#getResource(java.lang.String, int, java.lang.String)
+	 */
+	@Override
+	public Resource getResource(String resourceName, int resourceType, String encoding) throws ResourceNotFoundException, ParseErrorException {
+		this.stats.lookup();
+		return super.getResource(resourceName, resourceType, encoding);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.runtime.resource.ResourceManagerImpl#loadResource(java.lang.String, int, java.lang.String)
+	 */
+	@Override
+	protected Resource loadResource(String resourceName, int resourceType, String encoding) throws ResourceNotFoundException,
+			ParseErrorException {
+		long start = System.nanoTime();
+		try {
+			return super.loadResource(resourceName, resourceType, encoding);
+		} finally {
+			this.stats.loaded(System.nanoTime() - start);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.runtime.resource.ResourceManagerImpl#refreshResource(org.apache.velocity.runtime.resource.Resource, java.lang.String)
+	 */
+	@Override
+	protected Resource refreshResource(Resource resource, String encoding) throws ResourceNotFoundException, ParseErrorException {
+		this.stats.checked();
+		return super.refreshResource(resource, encoding);
+	}
+}
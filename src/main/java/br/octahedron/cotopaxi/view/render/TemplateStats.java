@@ -0,0 +1,86 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the templates' cache: how many templates lookups were resolved by the cache
+ * (hits) or had to load and parse the template (misses), how long parsing took, and how many
+ * times the cached templates were checked for modifications.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class TemplateStats {
+
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong parseTime = new AtomicLong();
+	private final AtomicLong checks = new AtomicLong();
+
+	void lookup() {
+		this.lookups.incrementAndGet();
+	}
+
+	void loaded(long nanos) {
+		this.misses.incrementAndGet();
+		this.parseTime.addAndGet(nanos);
+	}
+
+	void checked() {
+		this.checks.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of lookups resolved by the cache
+	 */
+	public long hits() {
+		return this.lookups.get() - this.misses.get();
+	}
+
+	/**
+	 * @return the number of lookups which loaded and parsed the template
+	 */
+	public long misses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * @return the total time spent loading and parsing templates, in milliseconds
+	 */
+	public long parseTime() {
+		return this.parseTime.get() / 1000000;
+	}
+
+	/**
+	 * @return the number of times cached templates were checked for modifications
+	 */
+	public long checks() {
+		return this.checks.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("hits: %d; misses: %d; parse time: %d ms; modification checks: %d", this.hits(), this.misses(),
+				this.parseTime(), this.checks());
+	}
+}
@@ -17,10 +17,24 @@
 package br.octahedron.cotopaxi.view.render;
 
 import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_CACHE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_FOLDER;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_MODIFICATION_CHECK_INTERVAL;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_PRELOAD;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_PROFILE;
+
+import java.io.File;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
@@ -33,18 +47,35 @@ import br.octahedron.util.Log;
  * 
  * Generally used on controllers to render the attributes of request.
  * 
+ * The parsed templates are cached by Velocity's resource loader if TEMPLATE_CACHE is enabled, and
+ * always at the production TEMPLATE_PROFILE or with TEMPLATE_PRELOAD. They can be loaded in
+ * advance, using {@link VelocityTemplateRender#preload()}. At the production profile the cached
+ * templates are never checked for modifications, while at development profile they're checked
+ * every TEMPLATE_MODIFICATION_CHECK_INTERVAL seconds, so changes are reloaded.
+ * 
  * @author Vítor Avelino - vitoravelino@octahedron.com.br
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
-public class VelocityTemplateRender implements TemplateRender {
+public class VelocityTemplateRender implements TemplateRender, Preloadable {
 
 	private static final Log log = new Log(VelocityTemplateRender.class);
 	private static final String VELOCIMACRO_LIBRARY = "macros.vm";  
+	private static final String TEMPLATE_EXTENSION = ".vm";
+	private static final String PRODUCTION_PROFILE = "production";
 	
 	private final VelocityEngine engine = new VelocityEngine();
+	private final TemplateStats stats = new TemplateStats();
 	private String templateFolder;
 	
 	public VelocityTemplateRender() {
+		this(StatsResourceManager.class);
+	}
+
+	/**
+	 * Creates a render which uses the given resource manager, so subclasses can change how
+	 * templates are loaded.
+	 */
+	protected VelocityTemplateRender(Class<? extends StatsResourceManager> resourceManager) {
 		this.templateFolder = getProperty(TEMPLATE_FOLDER);
 		if (!this.templateFolder.endsWith("/")) {
 			this.templateFolder += '/';
@@ -54,14 +85,99 @@ public class VelocityTemplateRender implements TemplateRender {
 		// FIXME need refactoring. use the same solution as the OutputStreamWriter
 		p.setProperty("input.encoding", "utf-8");
 		p.setProperty("output.encoding", "utf-8");
+		boolean production = PRODUCTION_PROFILE.equalsIgnoreCase(getProperty(TEMPLATE_PROFILE));
+		boolean cache = production || Boolean.parseBoolean(getProperty(TEMPLATE_PRELOAD)) || Boolean.parseBoolean(getProperty(TEMPLATE_CACHE));
+		p.setProperty("file.resource.loader.cache", String.valueOf(cache));
+		String checkInterval = getProperty(TEMPLATE_MODIFICATION_CHECK_INTERVAL);
+		if (production) {
+			checkInterval = "0";
+		}
+		p.setProperty("file.resource.loader.modificationCheckInterval", checkInterval);
+		p.setProperty("resource.manager.class", resourceManager.getName());
+		engine.setApplicationAttribute(StatsResourceManager.STATS_ATTRIBUTE, this.stats);
 		engine.init(p);
 	}
+
+	/**
+	 * @return the templates' cache {@link TemplateStats}
+	 */
+	public TemplateStats getStats() {
+		return this.stats;
+	}
+
+	/**
+	 * Parses all the templates (*.vm files) under the TEMPLATE_FOLDER, in parallel, putting them
+	 * into Velocity's resource cache. The velocimacro library isn't parsed as a template.
+	 */
+	@Override
+	public void preload() throws TemplateException {
+		List<String> templates = new ArrayList<String>();
+		this.findTemplates(new File(this.templateFolder), "", templates);
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), templates.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<String, Future<?>> results = new LinkedHashMap<String, Future<?>>();
+			for (final String templatePath : templates) {
+				results.put(templatePath, executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						engine.getTemplate(templateFolder + templatePath);
+					}
+				}));
+			}
+			int failures = 0;
+			for (Entry<String, Future<?>> result : results.entrySet()) {
+				try {
+					result.getValue().get();
+				} catch (ExecutionException ex) {
+					Throwable cause = ex.getCause();
+					log.error(cause, "Unable to load template %s: %s", result.getKey(), cause.getMessage());
+					failures++;
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new TemplateException("Templates loading interrupted", ex);
+				}
+			}
+			if (failures > 0) {
+				throw new TemplateException(String.format("Unable to load %d of %d templates", failures, templates.size()));
+			}
+			log.info("%d templates loaded", templates.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Looks for templates at the given folder and its sub folders.
+	 * 
+	 * @param folder
+	 *            the folder to look for templates
+	 * @param prefix
+	 *            the folder path, relative to the TEMPLATE_FOLDER
+	 * @param templates
+	 *            the list where the templates' paths are added to
+	 */
+	private void findTemplates(File folder, String prefix, List<String> templates) {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			log.warning("Template folder %s not found", folder.getPath());
+			return;
+		}
+		for (File file : files) {
+			String path = prefix + file.getName();
+			if (file.isDirectory()) {
+				this.findTemplates(file, path + '/', templates);
+			} else if (path.endsWith(TEMPLATE_EXTENSION) && !path.equals(VELOCIMACRO_LIBRARY)) {
+				templates.add(path);
+			}
+		}
+	}
 	
 	/* (non-Javadoc)
 	 * @see br.octahedron.cotopaxi.view.render.TemplateRender#render(java.lang.String, java.util.Map, java.io.Writer)
 	 */
 	public void render(String templatePath, Map<String,Object> output, Writer writer) {
-		log.info("Rendering template %s", templatePath);
+		log.debug("Rendering template %s", templatePath);
 		VelocityContext context = new VelocityContext(output);
 		Template template = engine.getTemplate(this.templateFolder + templatePath);
 		template.merge(context, writer);
@@ -0,0 +1,265 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import br.octahedron.util.ArrayMap;
+
+/**
+ * A pre-rendered response: the status code, content type, locale, headers and the already encoded
+ * content of a response. Dispatching it is just copy the bytes to the servlet response, so it's
+ * useful to answer requests which always get the same response, such as the not found ones.
+ * 
+ * A {@link CachedResponse} is created by recording the dispatch of another response, using a
+ * {@link Recorder}. It's immutable, so it can be shared by many threads.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class CachedResponse extends ServletGenericResponse {
+
+	private final int code;
+	private final String contentType;
+	private final Locale locale;
+	private final Map<String, String> headers;
+	private final byte[] content;
+
+	public CachedResponse(int code, String contentType, Locale locale, Map<String, String> headers, byte[] content) {
+		this.code = code;
+		this.contentType = contentType;
+		this.locale = locale;
+		this.headers = headers;
+		this.content = content;
+	}
+
+	/**
+	 * @return the http code
+	 */
+	public int getCode() {
+		return this.code;
+	}
+
+	/**
+	 * @return the response content, already encoded
+	 */
+	public byte[] getContent() {
+		return this.content;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 */
+	@Override
+	public void dispatch(HttpServletResponse servletResponse) throws IOException {
+		for (Entry<String, String> entry : this.headers.entrySet()) {
+			servletResponse.setHeader(entry.getKey(), entry.getValue());
+		}
+		if (this.locale != null) {
+			servletResponse.setLocale(this.locale);
+		}
+		if (this.contentType != null) {
+			servletResponse.setContentType(this.contentType);
+		}
+		servletResponse.setStatus(this.code);
+		servletResponse.setContentLength(this.content.length);
+		ServletOutputStream out = servletResponse.getOutputStream();
+		out.write(this.content);
+		out.flush();
+	}
+
+	/**
+	 * A {@link HttpServletResponse} that records the status, content type, locale, headers and
+	 * content written to it, instead of sending them to the client. The recorded response is got
+	 * using {@link Recorder#toResponse()}.
+	 * 
+	 * Cookies aren't recorded, since a cached response shouldn't set cookies: they're passed to
+	 * the wrapped response.
+	 */
+	public static class Recorder extends HttpServletResponseWrapper {
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final Map<String, String> headers = new ArrayMap<String, String>();
+		private int code = SC_OK;
+		private String contentType;
+		private Locale locale;
+		private ServletOutputStream outputStream;
+		private PrintWriter writer;
+		private boolean cookies = false;
+
+		public Recorder(HttpServletResponse response) {
+			super(response);
+		}
+
+		/**
+		 * Checks if the recorded response can be shared with other clients. It can't if it sets
+		 * cookies, or if it depends on the request headers, e.g., if it's compressed.
+		 * 
+		 * @return <code>true</code> if the recorded response can be cached, <code>false</code>
+		 *         otherwise.
+		 */
+		public boolean isCacheable() {
+			if (this.cookies) {
+				return false;
+			}
+			for (String name : this.headers.keySet()) {
+				if ("Set-Cookie".equalsIgnoreCase(name) || "Vary".equalsIgnoreCase(name) || "Content-Encoding".equalsIgnoreCase(name)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return a {@link CachedResponse} with everything recorded so far
+		 */
+		public CachedResponse toResponse() {
+			if (this.writer != null) {
+				this.writer.flush();
+			}
+			return new CachedResponse(this.code, this.contentType, this.locale, this.headers, this.buffer.toByteArray());
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			this.code = sc;
+		}
+
+		@Override
+		@Deprecated
+		public void setStatus(int sc, String sm) {
+			this.code = sc;
+		}
+
+		@Override
+		public void setContentType(String type) {
+			this.contentType = type;
+		}
+
+		@Override
+		public String getContentType() {
+			return this.contentType;
+		}
+
+		@Override
+		public void setLocale(Locale loc) {
+			this.locale = loc;
+		}
+
+		@Override
+		public Locale getLocale() {
+			return this.locale;
+		}
+
+		@Override
+		public void setContentLength(int len) {
+			// the content length is the recorded content's length
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			this.headers.put(name, value);
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			String current = this.headers.get(name);
+			this.headers.put(name, (current != null) ? current + ", " + value : value);
+		}
+
+		@Override
+		public void setIntHeader(String name, int value) {
+			this.setHeader(name, String.valueOf(value));
+		}
+
+		@Override
+		public void addIntHeader(String name, int value) {
+			this.addHeader(name, String.valueOf(value));
+		}
+
+		@Override
+		public void addCookie(Cookie cookie) {
+			this.cookies = true;
+			super.addCookie(cookie);
+		}
+
+		@Override
+		public boolean containsHeader(String name) {
+			return this.headers.containsKey(name);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (this.outputStream == null) {
+				this.outputStream = new ServletOutputStream() {
+					@Override
+					public void write(int b) {
+						Recorder.this.buffer.write(b);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) {
+						Recorder.this.buffer.write(b, off, len);
+					}
+				};
+			}
+			return this.outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (this.writer == null) {
+				this.writer = new PrintWriter(new OutputStreamWriter(this.getOutputStream(), RenderableResponse.CHARSET));
+			}
+			return this.writer;
+		}
+
+		@Override
+		public boolean isCommitted() {
+			return false;
+		}
+
+		@Override
+		public void flushBuffer() {
+			// nothing is sent until the recorded response is dispatched
+		}
+
+		@Override
+		public void resetBuffer() {
+			this.buffer.reset();
+		}
+
+		@Override
+		public void reset() {
+			this.buffer.reset();
+			this.headers.clear();
+			this.code = SC_OK;
+			this.contentType = null;
+			this.locale = null;
+		}
+	}
+}
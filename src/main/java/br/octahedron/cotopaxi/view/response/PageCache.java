@@ -0,0 +1,109 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.PAGE_CACHE_SIZE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
+import java.util.Locale;
+
+import br.octahedron.util.LRUCache;
+
+/**
+ * A cache for rendered templates. It keeps the rendered content, already encoded, for a given
+ * time (TTL), so the {@link TemplateResponse}s with the same cache key are written without
+ * rendering the template again.
+ * 
+ * It's bounded by the PAGE_CACHE_SIZE property, with LRU eviction policy. It's injected as a
+ * singleton, so applications can get it to invalidate cached pages.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class PageCache {
+
+	private final LRUCache<String, Page> cache = new LRUCache<String, Page>(Integer.parseInt(getProperty(PAGE_CACHE_SIZE)));
+
+	/**
+	 * Builds the key a page is cached with: the application key is combined with the template and
+	 * locale, since the same key can be used to render many templates or locales.
+	 */
+	public static String key(String template, Locale locale, String key) {
+		return template + '|' + locale + '|' + key;
+	}
+
+	/**
+	 * Gets the cached content for the given key.
+	 * 
+	 * @return the cached content, or <code>null</code> if there's no such content or if it's
+	 *         expired
+	 */
+	public byte[] get(String key) {
+		Page page = this.cache.get(key);
+		if (page == null) {
+			return null;
+		} else if (page.expires < System.currentTimeMillis()) {
+			this.cache.remove(key);
+			return null;
+		} else {
+			return page.content;
+		}
+	}
+
+	/**
+	 * Caches the given content.
+	 * 
+	 * @param ttl
+	 *            for how long the content is valid, in seconds
+	 */
+	public void put(String key, byte[] content, int ttl) {
+		this.cache.put(key, new Page(content, System.currentTimeMillis() + ttl * 1000L));
+	}
+
+	/**
+	 * Removes the cached content for the given key.
+	 */
+	public void remove(String key) {
+		this.cache.remove(key);
+	}
+
+	/**
+	 * Removes all the cached content.
+	 */
+	public void clear() {
+		this.cache.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.cache.toString();
+	}
+
+	private static class Page {
+		final byte[] content;
+		final long expires;
+
+		Page(byte[] content, long expires) {
+			this.content = content;
+			this.expires = expires;
+		}
+	}
+}
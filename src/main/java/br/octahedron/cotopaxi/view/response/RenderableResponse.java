@@ -16,10 +16,14 @@
  */
 package br.octahedron.cotopaxi.view.response;
 
+import static br.octahedron.cotopaxi.CotopaxiProperty.RESPONSE_BUFFER_SIZE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.RESPONSE_ENCODING;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,20 +33,31 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
 import br.octahedron.cotopaxi.controller.ControllerResponse;
+import br.octahedron.cotopaxi.view.Abortable;
+import br.octahedron.cotopaxi.view.HttpOutputStreamBuilder;
+import br.octahedron.cotopaxi.view.OutputStreamBuilder;
+import br.octahedron.cotopaxi.view.ResponseWriter;
 
 /**
  * A {@link ControllerResponse} that can be intercepted.
  * 
+ * The output is written using the current thread's {@link ResponseWriter}, encoded using the
+ * RESPONSE_ENCODING charset.
+ * 
  * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
  */
 public abstract class RenderableResponse extends ServletGenericResponse {
 
+	protected static final Charset CHARSET = Charset.forName(getProperty(RESPONSE_ENCODING));
+	private static final int BUFFER_SIZE = Integer.parseInt(getProperty(RESPONSE_BUFFER_SIZE));
+
 	protected Writer writer;
 	protected int code;
 	protected Map<String, String> cookies;
 	protected Map<String, String> headers;
 	protected Locale locale;
 	protected Map<String, Object> output;
+	private OutputStreamBuilder builder = null;
 
 	public RenderableResponse(int code, Map<String, Object> output, Map<String, String> cookies, Map<String, String> headers, Locale locale) {
 		this.code = code;
@@ -63,7 +78,29 @@ public abstract class RenderableResponse extends ServletGenericResponse {
 	 *             If some error occurs loading the {@link OutputStream}
 	 */
 	protected OutputStream getOutputStream(HttpServletResponse servletResponse) throws IOException {
-		return servletResponse.getOutputStream();
+		OutputStream outStream = servletResponse.getOutputStream();
+		if (this.builder instanceof HttpOutputStreamBuilder) {
+			outStream = ((HttpOutputStreamBuilder) this.builder).createOutputStream(outStream, servletResponse);
+		} else if (this.builder != null) {
+			outStream = this.builder.createOutputStream(outStream);
+		}
+		return outStream;
+	}
+
+	/**
+	 * Sets the {@link OutputStreamBuilder} to be used to create the {@link OutputStream} to write
+	 * this response, e.g., to compress it.
+	 */
+	public void setOutputStreamBuilder(OutputStreamBuilder builder) {
+		this.builder = builder;
+	}
+
+	/**
+	 * @return the {@link OutputStreamBuilder} to be used to create the {@link OutputStream}, or
+	 *         <code>null</code> if there's no one.
+	 */
+	public OutputStreamBuilder getOutputStreamBuilder() {
+		return this.builder;
 	}
 
 	/*
@@ -71,37 +108,60 @@ public abstract class RenderableResponse extends ServletGenericResponse {
 	 */
 	@Override
 	public final void dispatch(HttpServletResponse servletResponse) throws IOException {
-		// FIXME add a variable in application.config or something
-		this.writer = new OutputStreamWriter(this.getOutputStream(servletResponse), "utf-8");
+		OutputStream outStream = this.getOutputStream(servletResponse);
+		ResponseWriter responseWriter = ResponseWriter.open(outStream, CHARSET, BUFFER_SIZE);
+		this.writer = responseWriter;
+		boolean closed = false;
+		try {
+			// adjust headers
+			if (this.headers != null) {
+				for (Entry<String, String> entry : this.headers.entrySet()) {
+					servletResponse.setHeader(entry.getKey(), entry.getValue());
+				}
+			}
+			// adjust cookies
+			if (cookies != null) {
+				for (Entry<String, String> entry : cookies.entrySet()) {
+					servletResponse.addCookie(new Cookie(entry.getKey(), entry.getValue()));
+				}
+			}
+			// set locale
+			servletResponse.setLocale(this.locale);
+			// set content type
+			servletResponse.setContentType(this.getContentType());
+			// set status code
+			servletResponse.setStatus(this.code);
+
+			// render output
+			this.render();
 
-		// adjust headers
-		if (this.headers != null) {
-			for (Entry<String, String> entry : this.headers.entrySet()) {
-				servletResponse.setHeader(entry.getKey(), entry.getValue());
+			// flush, if necessary
+			if (servletResponse.isCommitted()) {
+				servletResponse.flushBuffer();
 			}
-		}
-		// adjust cookies
-		if (cookies != null) {
-			for (Entry<String, String> entry : cookies.entrySet()) {
-				servletResponse.addCookie(new Cookie(entry.getKey(), entry.getValue()));
+			responseWriter.close();
+			closed = true;
+		} finally {
+			// if rendering fails, the writer is given back to pool anyway
+			responseWriter.release();
+			this.writer = null;
+			// and the stream's resources, e.g. a compression Deflater, are freed
+			if (!closed && outStream instanceof Abortable) {
+				((Abortable) outStream).abort();
 			}
 		}
-		// set locale
-		servletResponse.setLocale(this.locale);
-		// set content type
-		servletResponse.setContentType(this.getContentType());
-		// set status code
-		servletResponse.setStatus(this.code);
-
-		// render output
-		this.render();
-
-		// flush, if necessary
-		if (servletResponse.isCommitted()) {
-			servletResponse.flushBuffer();
+	}
+
+	/**
+	 * Writes the given content, already encoded using the response's charset. It skips encoding,
+	 * if possible.
+	 */
+	protected void writeEncoded(byte[] content) throws IOException {
+		if (this.writer instanceof ResponseWriter && ((ResponseWriter) this.writer).getCharset().equals(CHARSET)) {
+			((ResponseWriter) this.writer).writeEncoded(content, 0, content.length);
+		} else {
+			this.writer.write(new String(content, CHARSET));
 		}
-		this.writer.close();
-		this.writer = null;
 	}
 
 	/**
@@ -0,0 +1,67 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A response with just a status code, and no content. It's cheap to dispatch, so it's useful to
+ * answer requests which should be rejected fast, e.g., while the application is overloaded.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class StatusResponse extends ServletGenericResponse {
+
+	private int code;
+	private String retryAfter;
+
+	public StatusResponse(int code) {
+		this(code, null);
+	}
+
+	/**
+	 * @param code
+	 *            the http code
+	 * @param retryAfter
+	 *            the Retry-After header value, in seconds, or <code>null</code> to omit it.
+	 */
+	public StatusResponse(int code, String retryAfter) {
+		this.code = code;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return the http code
+	 */
+	public int getCode() {
+		return this.code;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 */
+	@Override
+	public void dispatch(HttpServletResponse servletResponse) throws IOException {
+		servletResponse.setStatus(this.code);
+		if (this.retryAfter != null) {
+			servletResponse.setHeader("Retry-After", this.retryAfter);
+		}
+		servletResponse.setContentLength(0);
+	}
+}
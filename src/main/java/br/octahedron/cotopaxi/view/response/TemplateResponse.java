@@ -17,33 +17,39 @@
 package br.octahedron.cotopaxi.view.response;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
-import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpServletResponse;
-
 import br.octahedron.cotopaxi.controller.ControllerContext;
 import br.octahedron.cotopaxi.inject.Inject;
-import br.octahedron.cotopaxi.view.OutputStreamBuilder;
+import br.octahedron.cotopaxi.view.MemoryWriter;
 import br.octahedron.cotopaxi.view.render.TemplateRender;
+import br.octahedron.util.Log;
 
 /**
  * A {@link RenderableResponse} that render and write templates.
  * 
+ * If a cache key is set, the rendered template is kept at the {@link PageCache}, and while it's
+ * cached the responses with the same key, template and locale are written from the cache.
+ * 
  * @see {@link TemplateRender}
  * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
 public class TemplateResponse extends RenderableResponse {
 
+	private static final Log log = new Log(TemplateResponse.class);
+	private static final String CONTENT_TYPE = "text/html; charset=" + CHARSET.name().toLowerCase();
+
 	@Inject
 	private TemplateRender templateRender;
+	@Inject
+	private PageCache pageCache;
 
-	private OutputStreamBuilder builder = null;
 	private String template;
+	private String cacheKey = null;
+	private int cacheTtl = 0;
 	
 	public TemplateResponse(String template, int code, Map<String, Object> output, Locale locale) {
 		super(code, output, new HashMap<String, String>(), new HashMap<String, String>(), locale);
@@ -58,6 +64,7 @@ public class TemplateResponse extends RenderableResponse {
 
 	public TemplateResponse(String template, int code, ControllerContext context) {
 		this(template, code, context.getOutput(), context.getCookies(), context.getHeaders(), context.getLocale());
+		this.setCache(context.getCacheKey(), context.getCacheTtl());
 	}
 
 	/**
@@ -69,31 +76,24 @@ public class TemplateResponse extends RenderableResponse {
 	}
 
 	/**
-	 * Gets the {@link OutputStream} to be used to write output.
-	 * 
-	 * @param servletResponse
-	 *            The {@link ServletResponse} to be used to create the {@link OutputStream}
-	 * @return The {@link OutputStream} to be used to write response.
-	 * 
-	 * @throws IOException
-	 *             If some error occurs loading the {@link OutputStream}
+	 * @param pageCache
+	 *            the pageCache to set
 	 */
-	protected OutputStream getOutputStream(HttpServletResponse servletResponse) throws IOException {
-		OutputStream outStream = servletResponse.getOutputStream();
-		if (this.builder != null) {
-			outStream = this.builder.createOutputStream(outStream);
-		}
-
-		return outStream;
+	public void setPageCache(PageCache pageCache) {
+		this.pageCache = pageCache;
 	}
 
 	/**
-	 * Sets the {@link OutputStreamBuilder} to be used to create the Ou
+	 * Sets the key and TTL this response should be cached with, at {@link PageCache}.
 	 * 
-	 * @param gzipBuilder
+	 * @param key
+	 *            the cache key, or <code>null</code> to not cache this response.
+	 * @param ttl
+	 *            for how long the response is cached, in seconds
 	 */
-	public void setOutputStreamBuilder(OutputStreamBuilder gzipBuilder) {
-		this.builder = gzipBuilder;
+	public void setCache(String key, int ttl) {
+		this.cacheKey = key;
+		this.cacheTtl = ttl;
 	}
 
 	/**
@@ -163,7 +163,7 @@ public class TemplateResponse extends RenderableResponse {
 	 */
 	@Override
 	public String getContentType() {
-		return "text/html; charset=utf-8";
+		return CONTENT_TYPE;
 	}
 
 	/*
@@ -171,6 +171,27 @@ public class TemplateResponse extends RenderableResponse {
 	 */
 	@Override
 	protected void render() {
-		this.templateRender.render(this.template, this.output, this.writer);
+		if (this.cacheKey != null && this.pageCache != null) {
+			String key = PageCache.key(this.template, this.locale, this.cacheKey);
+			byte[] content = this.pageCache.get(key);
+			if (content == null) {
+				MemoryWriter memory = MemoryWriter.open();
+				try {
+					this.templateRender.render(this.template, this.output, memory);
+					content = memory.toString().getBytes(CHARSET);
+				} finally {
+					memory.release();
+				}
+				this.pageCache.put(key, content, this.cacheTtl);
+			}
+			try {
+				this.writeEncoded(content);
+			} catch (IOException ex) {
+				log.error(ex, "Error writing response: %s", ex.getLocalizedMessage());
+				throw new RuntimeException(ex);
+			}
+		} else {
+			this.templateRender.render(this.template, this.output, this.writer);
+		}
 	}
 }
@@ -0,0 +1,198 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} backed by arrays, for maps which usually hold just a few entries, such as the
+ * response's headers and cookies. Lookups are linear, so it shouldn't be used for large maps, but
+ * for a few entries it's cheaper than a {@link java.util.HashMap}, and clearing it doesn't release
+ * its arrays, so it can be reused.
+ * 
+ * It keeps the insertion order and it isn't thread-safe.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> {
+
+	private static final int DEFAULT_CAPACITY = 4;
+
+	private Object[] keys;
+	private Object[] values;
+	private int size = 0;
+	private EntrySet entrySet;
+
+	public ArrayMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ArrayMap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.keys = new Object[capacity];
+		this.values = new Object[capacity];
+	}
+
+	private int indexOf(Object key) {
+		for (int i = 0; i < this.size; i++) {
+			Object k = this.keys[i];
+			if (k == key || (key != null && key.equals(k))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.indexOf(key) >= 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int i = this.indexOf(key);
+		return (i >= 0) ? (V) this.values[i] : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		int i = this.indexOf(key);
+		if (i >= 0) {
+			V old = (V) this.values[i];
+			this.values[i] = value;
+			return old;
+		}
+		if (this.size == this.keys.length) {
+			Object[] newKeys = new Object[this.size * 2];
+			Object[] newValues = new Object[this.size * 2];
+			System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+			System.arraycopy(this.values, 0, newValues, 0, this.size);
+			this.keys = newKeys;
+			this.values = newValues;
+		}
+		this.keys[this.size] = key;
+		this.values[this.size] = value;
+		this.size++;
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		int i = this.indexOf(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V) this.values[i];
+		this.removeAt(i);
+		return old;
+	}
+
+	private void removeAt(int i) {
+		int moved = this.size - i - 1;
+		if (moved > 0) {
+			System.arraycopy(this.keys, i + 1, this.keys, i, moved);
+			System.arraycopy(this.values, i + 1, this.values, i, moved);
+		}
+		this.size--;
+		this.keys[this.size] = null;
+		this.values[this.size] = null;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.keys[i] = null;
+			this.values[i] = null;
+		}
+		this.size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public int size() {
+			return ArrayMap.this.size;
+		}
+
+		@Override
+		public void clear() {
+			ArrayMap.this.clear();
+		}
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new Iterator<Map.Entry<K, V>>() {
+				private int next = 0;
+				private boolean removable = false;
+
+				@Override
+				public boolean hasNext() {
+					return this.next < ArrayMap.this.size;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public Map.Entry<K, V> next() {
+					if (!this.hasNext()) {
+						throw new NoSuchElementException();
+					}
+					final int index = this.next++;
+					this.removable = true;
+					return new SimpleEntry<K, V>((K) ArrayMap.this.keys[index], (V) ArrayMap.this.values[index]) {
+						private static final long serialVersionUID = 4024637640937452349L;
+
+						@Override
+						public V setValue(V value) {
+							ArrayMap.this.values[index] = value;
+							return super.setValue(value);
+						}
+					};
+				}
+
+				@Override
+				public void remove() {
+					if (!this.removable) {
+						throw new IllegalStateException();
+					}
+					this.removable = false;
+					ArrayMap.this.removeAt(--this.next);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe, size-bounded, cache with LRU (Least Recently Used) eviction policy.
+ *
+ * To reduce contention, entries are spread over a few segments, each one with its own lock and
+ * its own LRU order. So, the eviction policy is LRU per segment, what is a good approximation of
+ * a global LRU.
+ *
+ * It also keeps hits, misses and evictions counters. A cache created with a max size less or
+ * equals to zero is disabled: it stores nothing and always misses.
+ *
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class LRUCache<K, V> {
+
+	private static final int MAX_SEGMENTS = 16;
+	private static final int MIN_SEGMENT_SIZE = 16;
+
+	private final Segment<K, V>[] segments;
+	private final int maxSize;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	@SuppressWarnings("unchecked")
+	public LRUCache(int maxSize) {
+		this.maxSize = (maxSize > 0) ? maxSize : 0;
+		int count = 0;
+		if (this.maxSize > 0) {
+			count = 1;
+			while (count < MAX_SEGMENTS && (this.maxSize / (count * 2)) >= MIN_SEGMENT_SIZE) {
+				count *= 2;
+			}
+		}
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			// the first segments take the remainder, so the sum of segments' sizes is maxSize
+			int segmentSize = (this.maxSize / count) + ((i < this.maxSize % count) ? 1 : 0);
+			this.segments[i] = new Segment<K, V>(segmentSize, this.evictions);
+		}
+	}
+
+	/**
+	 * Gets the value for the given key, updating its LRU position.
+	 *
+	 * @return the cached value, or <code>null</code> if there's no such key at cache
+	 */
+	public V get(K key) {
+		V value = null;
+		if (this.maxSize > 0) {
+			Segment<K, V> segment = this.segmentFor(key);
+			synchronized (segment) {
+				value = segment.get(key);
+			}
+		}
+		if (value != null) {
+			this.hits.incrementAndGet();
+		} else {
+			this.misses.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Puts a value into the cache. If the cache is full, the least recently used entry of the key
+	 * segment is evicted.
+	 */
+	public void put(K key, V value) {
+		if (this.maxSize > 0) {
+			Segment<K, V> segment = this.segmentFor(key);
+			synchronized (segment) {
+				segment.put(key, value);
+			}
+		}
+	}
+
+	/**
+	 * Removes the value for the given key, if exists.
+	 */
+	public void remove(K key) {
+		if (this.maxSize > 0) {
+			Segment<K, V> segment = this.segmentFor(key);
+			synchronized (segment) {
+				segment.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached entries. It doesn't reset the counters.
+	 */
+	public void clear() {
+		for (Segment<K, V> segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return the current number of cached entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the max number of entries this cache can hold
+	 */
+	public int maxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * @return the number of cache hits
+	 */
+	public long hits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return the number of cache misses
+	 */
+	public long misses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * @return the number of evicted entries
+	 */
+	public long evictions() {
+		return this.evictions.get();
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		int hash = key.hashCode();
+		// spreads the hash bits, as the HashMap does
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return this.segments[hash & (this.segments.length - 1)];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("size: %d/%d; hits: %d; misses: %d; evictions: %d", this.size(), this.maxSize, this.hits(), this.misses(),
+				this.evictions());
+	}
+
+	/**
+	 * A cache segment. It's a {@link LinkedHashMap} using access order, which evicts the eldest
+	 * entry when full. It isn't thread-safe: the {@link LRUCache} synchronizes on it.
+	 */
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 4469383578217356219L;
+		private final int maxSize;
+		private final AtomicLong evictions;
+
+		public Segment(int maxSize, AtomicLong evictions) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.evictions = evictions;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			if (this.size() > this.maxSize) {
+				this.evictions.incrementAndGet();
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+}
@@ -67,11 +67,16 @@ public class Log {
 	}
 
 	protected void log(Level level, String format, Object... params) {
-		this.log(level, null, String.format(format, params));
+		// avoids formatting messages which will be discarded
+		if (this.logger.isLoggable(level)) {
+			this.log(level, null, String.format(format, params));
+		}
 	}
 
 	protected void log(Level level, Throwable t, String format, Object... params) {
-		this.log(level, t, String.format(format, params));
+		if (this.logger.isLoggable(level)) {
+			this.log(level, t, String.format(format, params));
+		}
 	}
 
 	protected void log(Level level, Throwable t, String message) {
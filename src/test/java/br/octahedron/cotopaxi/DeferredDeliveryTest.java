@@ -0,0 +1,252 @@
+/*
+ *  This file is part of Cotopaxi.
+ * 
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ * 
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.controller.Controller;
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+import br.octahedron.cotopaxi.controller.ControllerExecutor;
+import br.octahedron.cotopaxi.controller.ControllerLimiter;
+import br.octahedron.cotopaxi.controller.DeferredResponse;
+import br.octahedron.cotopaxi.inject.InstancePool;
+import br.octahedron.cotopaxi.inject.RequestScope;
+import br.octahedron.cotopaxi.inject.Scope;
+import br.octahedron.cotopaxi.interceptor.FinalizerInterceptor;
+import br.octahedron.cotopaxi.interceptor.InterceptorManager;
+import br.octahedron.cotopaxi.interceptor.TemplateInterceptor;
+import br.octahedron.cotopaxi.view.response.RenderableResponse;
+import br.octahedron.cotopaxi.view.response.TemplateResponse;
+
+/**
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class DeferredDeliveryTest {
+
+	private ControllerDescriptor desc = new ControllerDescriptor("/deferred", "GET", "index", DeferringController.class.getName());
+	private InterceptorManager interceptor;
+	private ControllerExecutor executor;
+	private ControllerLimiter limiter;
+	private HttpServletRequest request;
+	private HttpServletResponse response;
+	private ByteArrayOutputStream content;
+	private InstancePool<Connection> pool = InstancePool.getPool(Connection.class);
+
+	@Before
+	public void setUp() throws Exception {
+		EncodingInterceptor.encoding = null;
+		CountingFinalizer.finished.set(0);
+		this.interceptor = new InterceptorManager();
+		this.interceptor.addInterceptor(EncodingInterceptor.class.getName());
+		this.interceptor.addInterceptor(CountingFinalizer.class.getName());
+		this.executor = new ControllerExecutor(this.interceptor);
+		this.limiter = new ControllerLimiter();
+		this.limiter.setLimit(DeferringController.class.getName(), 1, 0);
+		this.request = createNiceMock(HttpServletRequest.class);
+		expect(this.request.getRequestURI()).andReturn("/deferred").anyTimes();
+		expect(this.request.getHeader("Accept-Encoding")).andReturn("gzip").anyTimes();
+		replay(this.request);
+		this.content = new ByteArrayOutputStream();
+		this.response = createNiceMock(HttpServletResponse.class);
+		expect(this.response.getOutputStream()).andReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				DeferredDeliveryTest.this.content.write(b);
+			}
+		}).anyTimes();
+	}
+
+	@Test
+	public void testCompleteFromPlainThread() throws Exception {
+		replay(this.response);
+		final DeferredResponse deferred = this.defer();
+		DeferredDelivery delivery = this.delivery(deferred);
+		deferred.onComplete(delivery);
+		int idle = this.pool.idle();
+		// completed by a thread which isn't bound to the request's context
+		this.complete(deferred, 0);
+		// the interceptors run bound to the request's context
+		assertEquals("gzip", EncodingInterceptor.encoding);
+		assertEquals("done", this.content.toString());
+		assertEquals(1, CountingFinalizer.finished.get());
+		// the scope was closed, returning the pooled instance
+		assertEquals(idle + 1, this.pool.idle());
+	}
+
+	@Test
+	public void testCompleteBeforeTimeout() throws Exception {
+		replay(this.response);
+		DeferredResponse deferred = this.defer();
+		DeferredDelivery delivery = this.delivery(deferred);
+		int idle = this.pool.idle();
+		Thread worker = this.complete(deferred, 50);
+		delivery.await(5000);
+		worker.join();
+		assertEquals("gzip", EncodingInterceptor.encoding);
+		assertEquals("done", this.content.toString());
+		assertEquals(1, CountingFinalizer.finished.get());
+		assertEquals(idle + 1, this.pool.idle());
+	}
+
+	@Test
+	public void testCompleteAfterTimeout() throws Exception {
+		this.response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		replay(this.response);
+		DeferredResponse deferred = this.defer();
+		DeferredDelivery delivery = this.delivery(deferred);
+		int idle = this.pool.idle();
+		delivery.await(50);
+		verify(this.response);
+		assertEquals(1, CountingFinalizer.finished.get());
+		// the task may still be using the scope's instances
+		assertEquals(idle, this.pool.idle());
+		// completing it later doesn't dispatch it, but closes the scope
+		this.complete(deferred, 0).join();
+		assertEquals("", this.content.toString());
+		assertEquals(1, CountingFinalizer.finished.get());
+		assertEquals(idle + 1, this.pool.idle());
+	}
+
+	@Test
+	public void testTimeoutReleasesPermit() throws Exception {
+		this.response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		replay(this.response);
+		DeferredResponse deferred = this.defer();
+		DeferredDelivery delivery = this.delivery(deferred);
+		deferred.onComplete(delivery);
+		// the controller's only slot is taken
+		assertNull(this.limiter.acquire(this.desc));
+		// as the container does, once the async timeout expires
+		delivery.onTimeout();
+		verify(this.response);
+		ControllerLimiter.Permit permit = this.limiter.acquire(this.desc);
+		assertNotNull(permit);
+		// the late error and completion don't release it again
+		delivery.onError(new IOException());
+		this.complete(deferred, 0);
+		assertEquals(1, CountingFinalizer.finished.get());
+		assertNull(this.limiter.acquire(this.desc));
+		permit.release();
+	}
+
+	/**
+	 * Executes the {@link DeferringController}, as the servlet does.
+	 */
+	private DeferredResponse defer() {
+		DeferredResponse deferred = (DeferredResponse) this.executor.execute(this.desc, this.request);
+		this.executor.release();
+		return deferred;
+	}
+
+	private DeferredDelivery delivery(DeferredResponse deferred) {
+		ControllerLimiter.Permit permit = this.limiter.acquire(this.desc);
+		assertNotNull(permit);
+		return new DeferredDelivery(this.interceptor, this.executor, deferred, this.request, this.response, permit, null);
+	}
+
+	/**
+	 * Completes the given response from a new thread, after the given delay.
+	 */
+	private Thread complete(final DeferredResponse deferred, final long delay) throws InterruptedException {
+		Thread worker = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					return;
+				}
+				deferred.complete(new TextResponse());
+			}
+		};
+		worker.start();
+		if (delay == 0) {
+			worker.join();
+		}
+		return worker;
+	}
+
+	public static class DeferringController extends Controller {
+		public void getIndex() throws InstantiationException {
+			RequestScope.current().getInstance(Connection.class, Scope.POOLED);
+			this.defer();
+		}
+	}
+
+	public static class Connection {
+	}
+
+	public static class EncodingInterceptor extends TemplateInterceptor {
+		static volatile String encoding;
+
+		@Override
+		public void preRender(TemplateResponse response) {
+		}
+
+		@Override
+		public void preRenderResponse(RenderableResponse response) {
+			encoding = this.header("Accept-Encoding");
+		}
+	}
+
+	public static class CountingFinalizer implements FinalizerInterceptor {
+		static final AtomicInteger finished = new AtomicInteger();
+
+		@Override
+		public void finish() {
+			finished.incrementAndGet();
+		}
+	}
+
+	private static class TextResponse extends RenderableResponse {
+
+		public TextResponse() {
+			super(200, null, null, null, null);
+		}
+
+		@Override
+		protected String getContentType() {
+			return "text/plain";
+		}
+
+		@Override
+		protected void render() {
+			try {
+				this.writer.write("done");
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+}
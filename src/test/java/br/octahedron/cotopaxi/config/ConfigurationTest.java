@@ -26,6 +26,8 @@ import org.junit.Test;
 
 import br.octahedron.cotopaxi.config.ConfigurationParser.Token;
 import br.octahedron.cotopaxi.config.ConfigurationParser.TokenType;
+import br.octahedron.cotopaxi.controller.ControllerLimiter;
+import br.octahedron.cotopaxi.controller.ControllerLimiter.Limit;
 import br.octahedron.cotopaxi.interceptor.InterceptorManager;
 import br.octahedron.cotopaxi.route.Router;
 
@@ -56,4 +58,19 @@ public class ConfigurationTest {
 		loader.loadConfiguration();
 		// TODO improve this tests
 	}
+
+	@Test
+	public void testLimits() throws Exception {
+		InputStream in = ClassLoader.getSystemResourceAsStream("test.config");
+		ControllerLimiter limiter = new ControllerLimiter();
+		Router router = new Router();
+		ConfigurationLoader loader = new ConfigurationLoader(router, new InterceptorManager(), limiter, in);
+		loader.loadConfiguration();
+		assertEquals(4, router.getRoutes().size());
+		assertEquals(1, limiter.getLimits().size());
+		Limit limit = limiter.getLimits().iterator().next();
+		assertEquals("br.octahedron.cotopaxi.FakeTwo", limit.getName());
+		assertEquals(4, limit.getMaxConcurrent());
+		assertEquals(8, limit.getMaxQueue());
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static br.octahedron.cotopaxi.controller.ControllerContext.clearContext;
+import static br.octahedron.cotopaxi.controller.ControllerContext.getContext;
+import static br.octahedron.cotopaxi.controller.ControllerContext.setContext;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static org.easymock.EasyMock.createMock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ControllerContextTest {
+
+	private ControllerDescriptor desc = new ControllerDescriptor("/", "GET", "index", "Index");
+
+	@After
+	public void tearDown() {
+		clearContext();
+	}
+
+	@Test
+	public void testRecycle() {
+		setContext(createMock(HttpServletRequest.class), this.desc);
+		ControllerContext context = getContext();
+		context.getOutput().put("key", "value");
+		clearContext();
+		assertNull(getContext());
+		HttpServletRequest request = createMock(HttpServletRequest.class);
+		setContext(request, this.desc);
+		assertSame(context, getContext());
+		assertSame(request, getContext().getRequest());
+		assertNull(getContext().getOutput().get("key"));
+	}
+
+	@Test
+	public void testWrap() throws Exception {
+		final HttpServletRequest request = createMock(HttpServletRequest.class);
+		setContext(request, this.desc);
+		ControllerContext context = getContext();
+		Callable<HttpServletRequest> task = ControllerContext.wrap(new Callable<HttpServletRequest>() {
+			@Override
+			public HttpServletRequest call() throws Exception {
+				return getContext().getRequest();
+			}
+		});
+		// the request ends before the task runs
+		clearContext();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertSame(request, executor.submit(task).get());
+			// the worker thread doesn't keep the context
+			assertNull(executor.submit(new Callable<ControllerContext>() {
+				@Override
+				public ControllerContext call() throws Exception {
+					return getContext();
+				}
+			}).get());
+		} finally {
+			executor.shutdown();
+		}
+		// captured contexts aren't recycled
+		setContext(createMock(HttpServletRequest.class), this.desc);
+		assertNotSame(context, getContext());
+	}
+
+	@Test
+	public void testDefer() throws Exception {
+		setContext(createMock(HttpServletRequest.class), this.desc);
+		final DeferredResponse deferred = ControllerContext.defer();
+		assertFalse(getContext().isAnswered());
+		final AtomicBoolean completed = new AtomicBoolean(false);
+		deferred.onComplete(new Runnable() {
+			@Override
+			public void run() {
+				completed.set(true);
+			}
+		});
+		final ControllerResponse response = createMock(ControllerResponse.class);
+		Runnable task = ControllerContext.wrap(new Runnable() {
+			@Override
+			public void run() {
+				getContext().setControllerResponse(response);
+			}
+		});
+		clearContext();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.submit(task).get();
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(deferred.isDone());
+		assertTrue(completed.get());
+		assertSame(response, deferred.get(0));
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ControllerDescriptorTest {
+
+	@Test
+	public void testForwardTo() {
+		ControllerDescriptor desc = new ControllerDescriptor("/users", "GET", "index", "Users");
+		ControllerDescriptor target = desc.forwardTo("Users", "list");
+		assertEquals("/users", target.getUrl());
+		assertEquals("getList", target.getFullControllerName());
+		assertEquals("Users", target.getControllerClass());
+		// targets are cached
+		assertSame(target, desc.forwardTo("Users", "list"));
+		assertNotSame(target, desc.forwardTo("Users", "show"));
+		assertNotSame(target, desc.forwardTo("Admin", "list"));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *  This file is part of Cotopaxi.
+ * 
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ * 
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_PROPERTY;
+import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_TEMPLATE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.FORWARD_MAX_DEPTH;
+import static br.octahedron.cotopaxi.CotopaxiProperty.getProperty;
+import static br.octahedron.cotopaxi.controller.ControllerContext.clearContext;
+import static br.octahedron.cotopaxi.controller.ControllerContext.getContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.interceptor.InterceptorManager;
+import br.octahedron.cotopaxi.view.render.TemplateRender;
+import br.octahedron.cotopaxi.view.response.TemplateResponse;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ControllerExecutorTest {
+
+	@After
+	public void tearDown() {
+		clearContext();
+	}
+
+	@Test
+	public void testMaxForwardDepth() throws Exception {
+		int maxForwardDepth = Integer.parseInt(getProperty(FORWARD_MAX_DEPTH));
+		ControllerExecutor executor = new ControllerExecutor(new InterceptorManager());
+		HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+		expect(request.getRequestURI()).andReturn("/loop").anyTimes();
+		replay(request);
+		ControllerDescriptor desc = new ControllerDescriptor("/loop", "GET", "loop", LoopController.class.getName());
+
+		ControllerResponse response = executor.execute(desc, request);
+		assertEquals(maxForwardDepth, executor.getForwards());
+		assertEquals(maxForwardDepth + 1, LoopController.executions);
+
+		// it's the server error response
+		RecordingRender render = new RecordingRender();
+		((TemplateResponse) response).setTemplateRender(render);
+		HttpServletResponse servletResponse = createNiceMock(HttpServletResponse.class);
+		expect(servletResponse.getOutputStream()).andReturn(new ServletOutputStream() {
+			private ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+			@Override
+			public void write(int b) {
+				this.content.write(b);
+			}
+		});
+		servletResponse.setStatus(500);
+		replay(servletResponse);
+		response.dispatch(servletResponse);
+		verify(servletResponse);
+		assertEquals(getProperty(ERROR_TEMPLATE), render.template);
+		assertTrue(render.output.get(getProperty(ERROR_PROPERTY)) instanceof ControllerException);
+	}
+
+	@Test
+	public void testNotFound() {
+		ControllerExecutor executor = new ControllerExecutor(new InterceptorManager());
+		HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+		expect(request.getRequestURI()).andReturn("/missing").anyTimes();
+		expect(request.getMethod()).andReturn("GET").anyTimes();
+		replay(request);
+		assertTrue(executor.notFound(request) instanceof TemplateResponse);
+		ControllerDescriptor desc = getContext().getControllerDescriptor();
+		executor.release();
+		executor.notFound(request);
+		// not found requests share the same descriptor
+		assertSame(desc, getContext().getControllerDescriptor());
+	}
+
+	public static class LoopController extends Controller {
+		static int executions = 0;
+
+		public void getLoop() {
+			executions++;
+			this.forward("loop");
+		}
+	}
+
+	private static class RecordingRender implements TemplateRender {
+		String template;
+		Map<String, Object> output;
+
+		@Override
+		public void render(String templatePath, Map<String, Object> output, Writer writer) {
+			this.template = templatePath;
+			this.output = output;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.controller.ControllerLimiter.Permit;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ControllerLimiterTest {
+
+	@Test
+	public void testLimit() {
+		ControllerLimiter limiter = new ControllerLimiter();
+		limiter.setLimit("Slow", 2, 0);
+		ControllerDescriptor slow = new ControllerDescriptor("/slow", "GET", "index", "Slow");
+		Permit first = limiter.acquire(slow);
+		assertNotNull(first);
+		assertNotNull(limiter.acquire(slow));
+		// no slot, no queue: rejected
+		assertNull(limiter.acquire(slow));
+		assertEquals(1, limiter.getRejected());
+		first.release();
+		// releasing it again doesn't free another slot
+		first.release();
+		assertNotNull(limiter.acquire(slow));
+		assertNull(limiter.acquire(slow));
+		// other controllers aren't limited
+		ControllerDescriptor fast = new ControllerDescriptor("/fast", "GET", "index", "Fast");
+		assertSame(ControllerLimiter.UNLIMITED, limiter.acquire(fast));
+	}
+
+	@Test
+	public void testSequentialRequests() {
+		ControllerLimiter limiter = new ControllerLimiter();
+		limiter.setLimit("Slow", 1, 0);
+		ControllerDescriptor slow = new ControllerDescriptor("/slow", "GET", "index", "Slow");
+		ControllerLimiter.Limit limit = limiter.getLimits().iterator().next();
+		for (int i = 0; i < 5; i++) {
+			Permit permit = limiter.acquire(slow);
+			assertNotNull(permit);
+			assertEquals(1, limit.active());
+			permit.release();
+			assertEquals(0, limit.active());
+		}
+		assertEquals(0, limiter.getRejected());
+	}
+
+	@Test
+	public void testQueue() throws Exception {
+		final ControllerLimiter limiter = new ControllerLimiter();
+		limiter.setLimit("Slow", 1, 1);
+		final ControllerDescriptor slow = new ControllerDescriptor("/slow", "GET", "index", "Slow");
+		final Permit permit = limiter.acquire(slow);
+		Thread waiting = new Thread() {
+			@Override
+			public void run() {
+				limiter.acquire(slow).release();
+			}
+		};
+		waiting.start();
+		while (limiter.getQueueDepth() == 0) {
+			Thread.sleep(5);
+		}
+		// the queue is full
+		assertNull(limiter.acquire(slow));
+		permit.release();
+		waiting.join();
+		assertEquals(0, limiter.getQueueDepth());
+		assertEquals(1, limiter.getRejected());
+		// the waiting request gave its slot back
+		assertEquals(0, limiter.getLimits().iterator().next().active());
+	}
+}
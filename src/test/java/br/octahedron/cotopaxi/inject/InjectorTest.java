@@ -16,7 +16,19 @@
  */
 package br.octahedron.cotopaxi.inject;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -35,4 +47,99 @@ public class InjectorTest {
 		UserDAO userDAO = service.getUserDAO();
 		assertNotNull(userDAO);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testInjectionPlan() throws Exception {
+		assertSame(InjectionPlan.EMPTY, InjectionPlan.build(UserDAO.class));
+		InjectionPlan plan = InjectionPlan.build(UserFacade.class);
+		assertEquals(1, plan.getPoints().length);
+		assertEquals(UserService.class, plan.getPoints()[0].getType());
+		// the plan is reused for new instances
+		UserFacade first = Injector.createInstance(UserFacade.class);
+		UserFacade second = Injector.createInstance(UserFacade.class);
+		assertNotNull(first.getUserService());
+		assertSame(first.getUserService(), second.getUserService());
+	}
+
+	@Test
+	public void testGeneratedFactory() throws Exception {
+		// UserFacade's factory is generated by the InjectProcessor when compiling tests
+		InjectionPlan plan = InjectionPlan.forClass(UserFacade.class);
+		assertNotNull(plan.getFactory());
+		assertEquals(0, plan.getPoints().length);
+		assertNull(InjectionPlan.forClass(UserDAO.class).getFactory());
+		UserFacade facade = Injector.createInstance(UserFacade.class);
+		assertNotNull(facade.getUserService());
+		assertNotNull(facade.getUserService().getUserDAO());
+	}
+
+	@Test
+	public void testRequestScope() throws Exception {
+		DependencyManager.registerDependency(Repository.class, RepositoryImpl.class);
+		ScopedFacade facade = Injector.createInstance(ScopedFacade.class);
+		RequestScope scope = RequestScope.open();
+		Object first = facade.getRepository().self();
+		assertSame(first, facade.getRepository().self());
+		scope.close();
+		scope = RequestScope.open();
+		assertNotSame(first, facade.getRepository().self());
+		scope.close();
+		try {
+			facade.getRepository().self();
+			fail();
+		} catch (IllegalStateException e) {
+			// ok, there's no request
+		}
+	}
+
+	@Test
+	public void testPooledScope() throws Exception {
+		DependencyManager.registerDependency(Repository.class, RepositoryImpl.class);
+		InstancePool<Repository> pool = InstancePool.getPool(Repository.class);
+		RequestScope scope = RequestScope.open();
+		Repository first = scope.getInstance(Repository.class, Scope.POOLED);
+		assertSame(first, scope.getInstance(Repository.class, Scope.POOLED));
+		scope.close();
+		assertEquals(1, pool.idle());
+		scope = RequestScope.open();
+		assertSame(first, scope.getInstance(Repository.class, Scope.POOLED));
+		assertEquals(0, pool.idle());
+		scope.close();
+	}
+
+	@Test
+	public void testConcurrentGetInstance() throws Exception {
+		int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Future<?>[] results = new Future<?>[threads];
+			for (int i = 0; i < threads; i++) {
+				results[i] = executor.submit(new Callable<SlowService>() {
+					@Override
+					public SlowService call() throws Exception {
+						start.await();
+						return Injector.getInstance(SlowService.class);
+					}
+				});
+			}
+			start.countDown();
+			Object instance = results[0].get();
+			for (Future<?> result : results) {
+				assertSame(instance, result.get());
+			}
+			assertEquals(1, SlowService.created.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public static class SlowService {
+		static final AtomicInteger created = new AtomicInteger();
+
+		public SlowService() throws InterruptedException {
+			created.incrementAndGet();
+			Thread.sleep(50);
+		}
+	}
+}
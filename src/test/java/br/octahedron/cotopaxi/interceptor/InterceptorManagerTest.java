@@ -17,6 +17,7 @@
 package br.octahedron.cotopaxi.interceptor;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
 
 import java.lang.annotation.Annotation;
 
@@ -87,6 +88,28 @@ public class InterceptorManagerTest {
 		assertEquals(TestingOne.class, interceptor1.receivedAnn.annotationType());
 	}
 
+	@Test
+	public void testInterceptorChainUpdate() throws SecurityException, NoSuchMethodException {
+		this.manager.addControllerInterceptor(interceptor1);
+		this.manager.execute(AnnotatedClass.class.getMethod("test", null), null);
+		assertEquals(1, interceptor1.myOrder);
+		assertNull(interceptor2.receivedAnn);
+
+		// new interceptors should apply to methods already executed
+		this.manager.addControllerInterceptor(interceptor2);
+		this.manager.execute(AnnotatedClass.class.getMethod("test", null), null);
+		assertEquals(2, interceptor1.myOrder);
+		assertEquals(3, interceptor2.myOrder);
+		assertEquals(TestingTwo.class, interceptor2.receivedAnn.annotationType());
+	}
+
+	@Test
+	public void testNoInterceptors() throws SecurityException, NoSuchMethodException {
+		this.manager.addControllerInterceptor(interceptor1);
+		this.manager.execute(Object.class.getMethod("toString", null), null);
+		assertNull(interceptor1.receivedAnn);
+	}
+
 	class TestInterceptor extends ControllerInterceptor {
 
 		private Class<? extends Annotation> ann;
@@ -17,11 +17,15 @@
 package br.octahedron.cotopaxi.route;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.util.Arrays;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.junit.Before;
@@ -66,6 +70,37 @@ public class RoutingProcessorTest {
 		}
 	}
 	
+	@Test
+	public void testLookupNotFound() {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/trollface");
+		expect(request.getMethod()).andReturn("POST");
+		// test
+		replay(request);
+		try {
+			assertNull(router.lookup(request));
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testLookup() {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/trollface/email/test-troll").anyTimes();
+		expect(request.getMethod()).andReturn("POST");
+		request.setAttribute("username", "trollface");
+		request.setAttribute("email", "test-troll");
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.lookup(request);
+			assertEquals("UserPost3", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
 	@Test
 	public void testStaticGet() throws NotFoundExeption  {
 		// setup mock
@@ -214,4 +249,113 @@ public class RoutingProcessorTest {
 		}
 	}
 	
+	@Test
+	public void testDynamicBacktracking() throws NotFoundExeption  {
+		// setup mock: /users/... is a static prefix, but only /users/search/{name} is mapped
+		expect(request.getRequestURI()).andReturn("/users/edit/1").anyTimes();
+		expect(request.getMethod()).andReturn("POST");
+		request.setAttribute("username", "users");
+		request.setAttribute("id", "1");
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("UserPost2", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+	
+	@Test(expected = NotFoundExeption.class)
+	public void testDynamicInvalidValue() throws NotFoundExeption {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/trollface/edit/a+b").anyTimes();
+		expect(request.getMethod()).andReturn("POST");
+		// test
+		replay(request);
+		try {
+			router.route(request);
+		} finally {
+			verify(request);
+		}
+	}
+	
+	@Test
+	public void testDynamicKeepsValueCase() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/Users/Search/VitorAvelino").anyTimes();
+		expect(request.getMethod()).andReturn("GET");
+		request.setAttribute("name", "VitorAvelino");
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("SearchUser", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+	
+	@Test
+	public void testStaticIgnoresCaseAndTrailingSlash() throws NotFoundExeption {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/TeSt/");
+		expect(request.getMethod()).andReturn("get");
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("Test1", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+	
+	@Test(expected = NotFoundExeption.class)
+	public void testUnsupportedMethod() throws NotFoundExeption {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/test");
+		expect(request.getMethod()).andReturn("PATCH");
+		// test
+		replay(request);
+		try {
+			router.route(request);
+		} finally {
+			verify(request);
+		}
+	}
+	
+	@Test
+	public void testReplaceRoutes() throws NotFoundExeption {
+		router.replaceRoutes(Arrays.asList(new ControllerDescriptor("/other", "get", "Other", "java.lang.String")));
+		assertEquals(1, router.getRoutes().size());
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/other");
+		expect(request.getMethod()).andReturn("GET");
+		expect(request.getRequestURI()).andReturn("/test");
+		expect(request.getMethod()).andReturn("GET");
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("Other", desc.getControllerName());
+			router.route(request);
+			assertTrue("Old route should be gone", false);
+		} catch (NotFoundExeption ex) {
+			assertEquals("/test", ex.getUrl());
+		} finally {
+			verify(request);
+		}
+	}
+	
+	@Test
+	public void testInvalidRoutesKeepsCurrent() {
+		try {
+			router.addRoute(new ControllerDescriptor("/other", "patch", "Other", "java.lang.String"));
+			assertTrue("Unsupported method should be rejected", false);
+		} catch (IllegalArgumentException ex) {
+			assertEquals(8, router.getRoutes().size());
+		}
+	}
+	
 }
@@ -0,0 +1,178 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.view.response.RenderableResponse;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class CompressionOutputStreamBuilderTest {
+
+	private static final String CONTENT;
+
+	static {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append("<p>Cotopaxi compressed content</p>");
+		}
+		CONTENT = content.toString();
+	}
+
+	@Test
+	public void testGzip() throws IOException {
+		HttpServletResponse response = createMock(HttpServletResponse.class);
+		expect(response.getContentType()).andReturn("text/html; charset=utf-8");
+		response.addHeader("Vary", "Accept-Encoding");
+		expect(response.containsHeader("Content-Encoding")).andReturn(false);
+		response.setHeader("Content-Encoding", "gzip");
+		replay(response);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.write(CompressionOutputStreamBuilder.GZIP.createOutputStream(out, response), 2);
+		verify(response);
+		assertEquals(CONTENT + CONTENT, this.read(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))));
+	}
+
+	@Test
+	public void testDeflate() throws IOException {
+		HttpServletResponse response = createMock(HttpServletResponse.class);
+		expect(response.getContentType()).andReturn("application/json");
+		response.addHeader("Vary", "Accept-Encoding");
+		expect(response.containsHeader("Content-Encoding")).andReturn(false);
+		response.setHeader("Content-Encoding", "deflate");
+		replay(response);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.write(CompressionOutputStreamBuilder.DEFLATE.createOutputStream(out, response), 1);
+		verify(response);
+		assertEquals(CONTENT, this.read(new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()))));
+	}
+
+	@Test
+	public void testNotCompressed() throws IOException {
+		// small content
+		HttpServletResponse response = createMock(HttpServletResponse.class);
+		expect(response.getContentType()).andReturn("text/html");
+		response.addHeader("Vary", "Accept-Encoding");
+		replay(response);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputStream stream = CompressionOutputStreamBuilder.GZIP.createOutputStream(out, response);
+		stream.write("small".getBytes("utf-8"));
+		stream.close();
+		verify(response);
+		assertEquals("small", out.toString("utf-8"));
+
+		// already compressed content type
+		response = createMock(HttpServletResponse.class);
+		expect(response.getContentType()).andReturn("image/png");
+		replay(response);
+		out = new ByteArrayOutputStream();
+		this.write(CompressionOutputStreamBuilder.GZIP.createOutputStream(out, response), 1);
+		verify(response);
+		assertEquals(CONTENT, out.toString("utf-8"));
+	}
+
+	@Test
+	public void testRenderFailure() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+		expect(response.getContentType()).andReturn("text/html").anyTimes();
+		expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				out.write(b);
+			}
+		});
+		replay(response);
+		FailingResponse failing = new FailingResponse();
+		failing.setOutputStreamBuilder(CompressionOutputStreamBuilder.GZIP);
+		int idle = CompressionOutputStreamBuilder.GZIP.idle();
+		try {
+			failing.dispatch(response);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		// the deflater was given back, even though the stream wasn't closed
+		assertEquals(Math.max(idle, 1), CompressionOutputStreamBuilder.GZIP.idle());
+	}
+
+	private void write(OutputStream stream, int times) throws IOException {
+		byte[] bytes = CONTENT.getBytes("utf-8");
+		for (int i = 0; i < times; i++) {
+			stream.write(bytes);
+		}
+		stream.close();
+	}
+
+	private String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+		return out.toString("utf-8");
+	}
+
+	/**
+	 * Fails after rendering enough content to be compressed
+	 */
+	private static class FailingResponse extends RenderableResponse {
+
+		public FailingResponse() {
+			super(200, null, null, null, null);
+		}
+
+		@Override
+		protected String getContentType() {
+			return "text/html";
+		}
+
+		@Override
+		protected void render() {
+			try {
+				this.writer.write(CONTENT);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			throw new IllegalStateException("Rendering failed");
+		}
+	}
+}
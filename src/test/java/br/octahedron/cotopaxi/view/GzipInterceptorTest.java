@@ -0,0 +1,41 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import static br.octahedron.cotopaxi.view.GzipInterceptor.negotiate;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class GzipInterceptorTest {
+
+	@Test
+	public void testNegotiate() {
+		assertNull(negotiate(null));
+		assertNull(negotiate("identity"));
+		assertNull(negotiate("gzip;q=0"));
+		assertEquals(CompressionOutputStreamBuilder.GZIP, negotiate("gzip, deflate"));
+		assertEquals(CompressionOutputStreamBuilder.GZIP, negotiate("deflate, GZIP;q=0.5"));
+		assertEquals(CompressionOutputStreamBuilder.GZIP, negotiate("*"));
+		assertEquals(CompressionOutputStreamBuilder.DEFLATE, negotiate("deflate"));
+		assertEquals(CompressionOutputStreamBuilder.DEFLATE, negotiate("gzip;q=0, deflate, *"));
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class MemoryWriterTest {
+
+	@Test
+	public void testPool() throws IOException {
+		MemoryWriter writer = MemoryWriter.open();
+		writer.write("Hello ");
+		// nested writers aren't the pooled one
+		MemoryWriter nested = MemoryWriter.open();
+		assertNotSame(writer, nested);
+		nested.write("nested".toCharArray());
+		assertEquals("nested", nested.toString());
+		nested.release();
+		writer.write('W');
+		writer.write("orld!", 0, 4);
+		assertEquals("Hello World", writer.toString());
+		writer.release();
+
+		// a released writer is reused, without its previous content
+		assertSame(writer, MemoryWriter.open());
+		assertEquals("", writer.toString());
+		writer.release();
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ResponseWriterTest {
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	@Test
+	public void testEncoding() throws IOException {
+		// a small buffer, so the content is encoded in many chunks, and the surrogate pairs are split
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			expected.append("ação 𝄞 ");
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResponseWriter writer = ResponseWriter.open(out, UTF8, 17);
+		writer.write(expected.toString());
+		writer.write('!');
+		writer.close();
+		assertEquals(expected.toString() + "!", out.toString("utf-8"));
+	}
+
+	@Test
+	public void testPool() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResponseWriter writer = ResponseWriter.open(out, UTF8, 64);
+		// nested writers aren't the pooled one
+		ResponseWriter nested = ResponseWriter.open(new ByteArrayOutputStream(), UTF8, 64);
+		assertNotSame(writer, nested);
+		nested.close();
+		writer.write("first");
+		writer.close();
+		assertEquals("first", out.toString("utf-8"));
+
+		// a released writer is reused, without its previous content
+		out = new ByteArrayOutputStream();
+		assertSame(writer, ResponseWriter.open(out, UTF8, 64));
+		writer.write("discarded");
+		writer.release();
+		assertEquals("", out.toString("utf-8"));
+		assertSame(writer, ResponseWriter.open(out, UTF8, 64));
+		writer.write("second");
+		writer.close();
+		assertEquals("second", out.toString("utf-8"));
+	}
+}
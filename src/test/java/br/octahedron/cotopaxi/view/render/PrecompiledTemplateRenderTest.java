@@ -0,0 +1,118 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.view.ResponseWriter;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class PrecompiledTemplateRenderTest {
+
+	private static final String FOLDER = "target/test-precompiled/";
+	private static final String EXPECTED = "<ul>\n<li>ação</li>\n<li>cotopaxi</li>\n</ul>\n<p>Olá Cotopaxi!</p>\n";
+
+	@Before
+	public void setUp() throws IOException {
+		System.setProperty("TEMPLATE_FOLDER", FOLDER);
+		this.write("macros.vm", "#macro(greet $who)Olá $who!#end");
+		this.write("list.vm", "<ul>\n#foreach($item in $items)\n<li>$item</li>\n#end\n</ul>\n#if($name)\n<p>#greet($name)</p>\n#end\n");
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty("TEMPLATE_FOLDER");
+		this.delete(new File(FOLDER));
+	}
+
+	@Test
+	public void testRender() throws IOException {
+		PrecompiledTemplateRender render = new PrecompiledTemplateRender();
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put("items", Arrays.asList("ação", "cotopaxi"));
+		output.put("name", "Cotopaxi");
+
+		// pre-encoded chunks
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResponseWriter writer = ResponseWriter.open(out, Charset.forName("utf-8"), 32);
+		render.render("list.vm", output, writer);
+		writer.close();
+		assertEquals(EXPECTED, out.toString("utf-8"));
+
+		// any other writer
+		StringWriter stringWriter = new StringWriter();
+		render.render("list.vm", output, stringWriter);
+		assertEquals(EXPECTED, stringWriter.toString());
+	}
+
+	@Test
+	public void testPrecompile() throws Exception {
+		RuntimeInstance runtime = new RuntimeInstance();
+		runtime.init();
+		SimpleNode node = runtime.parse(new StringReader("static #if($a) inner #end $b static"), "test.vm");
+		// as Velocity does once a template is parsed
+		node.init(new InternalContextAdapterImpl(new VelocityContext()), runtime);
+		Charset utf8 = Charset.forName("utf-8");
+		assertEquals(4, PrecompilingResourceManager.precompile(node, utf8));
+		// already precompiled
+		assertEquals(0, PrecompilingResourceManager.precompile(node, utf8));
+	}
+
+	private void write(String template, String content) throws IOException {
+		File file = new File(FOLDER + template);
+		file.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "utf-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				this.delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class VelocityTemplateRenderTest {
+
+	private static final String FOLDER = "target/test-templates/";
+
+	@Before
+	public void setUp() throws IOException {
+		System.setProperty("TEMPLATE_FOLDER", FOLDER);
+		this.write("macros.vm", "#macro(greet $who)Hello $who!#end");
+		this.write("hello.vm", "#greet($name)");
+		this.write("mail/welcome.vm", "Welcome $name!");
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty("TEMPLATE_FOLDER");
+		System.clearProperty("TEMPLATE_PROFILE");
+		this.delete(new File(FOLDER));
+	}
+
+	@Test
+	public void testPreload() throws TemplateException {
+		VelocityTemplateRender render = new VelocityTemplateRender();
+		render.preload();
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put("name", "Cotopaxi");
+		StringWriter writer = new StringWriter();
+		render.render("mail/welcome.vm", output, writer);
+		assertEquals("Welcome Cotopaxi!", writer.toString());
+	}
+
+	@Test
+	public void testStats() {
+		System.setProperty("TEMPLATE_PROFILE", "production");
+		VelocityTemplateRender render = new VelocityTemplateRender();
+		TemplateStats stats = render.getStats();
+		long hits = stats.hits();
+		long misses = stats.misses();
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put("name", "Cotopaxi");
+		for (int i = 0; i < 3; i++) {
+			StringWriter writer = new StringWriter();
+			render.render("hello.vm", output, writer);
+			assertEquals("Hello Cotopaxi!", writer.toString());
+		}
+		assertEquals(misses + 1, stats.misses());
+		assertEquals(hits + 2, stats.hits());
+		assertEquals(0, stats.checks());
+	}
+
+	@Test
+	public void testNoCacheByDefault() {
+		VelocityTemplateRender render = new VelocityTemplateRender();
+		TemplateStats stats = render.getStats();
+		long hits = stats.hits();
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put("name", "Cotopaxi");
+		for (int i = 0; i < 3; i++) {
+			StringWriter writer = new StringWriter();
+			render.render("hello.vm", output, writer);
+			assertEquals("Hello Cotopaxi!", writer.toString());
+		}
+		// at development profile templates are parsed on every request
+		assertEquals(hits, stats.hits());
+	}
+
+	@Test
+	public void testPreloadFailure() throws IOException {
+		this.write("broken.vm", "#if($name");
+		try {
+			new VelocityTemplateRender().preload();
+			fail();
+		} catch (TemplateException ex) {
+			assertEquals("Unable to load 1 of 3 templates", ex.getMessage());
+		}
+	}
+
+	private void write(String template, String content) throws IOException {
+		File file = new File(FOLDER + template);
+		file.getParentFile().mkdirs();
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				this.delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class CachedResponseTest {
+
+	@Test
+	public void testRecord() throws IOException {
+		HttpServletResponse original = createMock(HttpServletResponse.class);
+		replay(original);
+		CachedResponse.Recorder recorder = new CachedResponse.Recorder(original);
+		recorder.setHeader("X-Test", "one");
+		recorder.addHeader("X-Test", "two");
+		recorder.setLocale(Locale.ENGLISH);
+		recorder.setContentType("text/html; charset=utf-8");
+		recorder.setStatus(404);
+		recorder.getWriter().write("not found");
+		CachedResponse cached = recorder.toResponse();
+		verify(original);
+
+		assertEquals(404, cached.getCode());
+		assertEquals("not found", new String(cached.getContent(), "utf-8"));
+
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		HttpServletResponse response = createMock(HttpServletResponse.class);
+		response.setHeader("X-Test", "one, two");
+		response.setLocale(Locale.ENGLISH);
+		response.setContentType("text/html; charset=utf-8");
+		response.setStatus(404);
+		response.setContentLength(9);
+		expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				content.write(b);
+			}
+		});
+		replay(response);
+		cached.dispatch(response);
+		verify(response);
+		assertEquals("not found", content.toString("utf-8"));
+	}
+
+	@Test
+	public void testCacheable() {
+		HttpServletResponse original = createNiceMock(HttpServletResponse.class);
+		replay(original);
+		CachedResponse.Recorder recorder = new CachedResponse.Recorder(original);
+		recorder.setHeader("X-Test", "one");
+		assertTrue(recorder.isCacheable());
+		recorder.addHeader("vary", "Accept-Encoding");
+		assertFalse(recorder.isCacheable());
+
+		recorder = new CachedResponse.Recorder(original);
+		recorder.setHeader("Set-Cookie", "session=1");
+		assertFalse(recorder.isCacheable());
+
+		recorder = new CachedResponse.Recorder(original);
+		recorder.addCookie(new Cookie("session", "1"));
+		assertFalse(recorder.isCacheable());
+	}
+}
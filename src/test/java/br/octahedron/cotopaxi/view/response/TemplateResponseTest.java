@@ -0,0 +1,92 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import static junit.framework.Assert.assertEquals;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.view.render.TemplateRender;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class TemplateResponseTest {
+
+	@Test
+	public void testPageCache() throws IOException {
+		CountingRender render = new CountingRender();
+		PageCache cache = new PageCache();
+		assertEquals("ação 1", this.dispatch(render, cache, Locale.ENGLISH));
+		// cached
+		assertEquals("ação 1", this.dispatch(render, cache, Locale.ENGLISH));
+		assertEquals(1, render.count);
+		// other locale
+		assertEquals("ação 2", this.dispatch(render, cache, Locale.FRENCH));
+		assertEquals(2, render.count);
+		// expired
+		cache.put(PageCache.key("page.vm", Locale.ENGLISH, "home"), "old".getBytes("utf-8"), -1);
+		assertEquals("ação 3", this.dispatch(render, cache, Locale.ENGLISH));
+	}
+
+	private String dispatch(TemplateRender render, PageCache cache, Locale locale) throws IOException {
+		TemplateResponse response = new TemplateResponse("page.vm", 200, new HashMap<String, Object>(), locale);
+		response.setTemplateRender(render);
+		response.setPageCache(cache);
+		response.setCache("home", 60);
+
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		HttpServletResponse servletResponse = createNiceMock(HttpServletResponse.class);
+		expect(servletResponse.getOutputStream()).andReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				content.write(b);
+			}
+		});
+		servletResponse.setLocale((Locale) anyObject());
+		replay(servletResponse);
+		response.dispatch(servletResponse);
+		return content.toString("utf-8");
+	}
+
+	private static class CountingRender implements TemplateRender {
+		int count = 0;
+
+		@Override
+		public void render(String templatePath, Map<String, Object> output, Writer writer) {
+			try {
+				writer.write("ação " + (++this.count));
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+}
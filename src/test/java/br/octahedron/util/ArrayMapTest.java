@@ -0,0 +1,69 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ArrayMapTest {
+
+	@Test
+	public void putGetTest() {
+		Map<String, Integer> map = new ArrayMap<String, Integer>(2);
+		for (int i = 0; i < 10; i++) {
+			assertNull(map.put("k" + i, i));
+		}
+		assertEquals(10, map.size());
+		assertEquals(Integer.valueOf(3), map.put("k3", 30));
+		assertEquals(Integer.valueOf(30), map.get("k3"));
+		assertEquals(Integer.valueOf(9), map.get("k9"));
+		assertNull(map.get("k10"));
+		assertEquals(10, map.size());
+	}
+
+	@Test
+	public void removeTest() {
+		Map<String, Integer> map = new ArrayMap<String, Integer>();
+		map.put("a", 1);
+		map.put("b", 2);
+		map.put("c", 3);
+		assertEquals(Integer.valueOf(2), map.remove("b"));
+		assertFalse(map.containsKey("b"));
+		assertEquals(2, map.size());
+		Iterator<Entry<String, Integer>> it = map.entrySet().iterator();
+		assertEquals("a", it.next().getKey());
+		it.remove();
+		assertEquals("c", it.next().getKey());
+		assertFalse(it.hasNext());
+		assertEquals(1, map.size());
+		map.clear();
+		assertTrue(map.isEmpty());
+		map.put("d", 4);
+		assertEquals(Integer.valueOf(4), map.get("d"));
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class LRUCacheTest {
+
+	@Test
+	public void evictionTest() {
+		LRUCache<String, Integer> cache = new LRUCache<String, Integer>(3);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("c", 3);
+		// "a" becomes the most recently used
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		cache.put("d", 4);
+		assertEquals(3, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals(Integer.valueOf(3), cache.get("c"));
+		assertEquals(Integer.valueOf(4), cache.get("d"));
+		assertEquals(1, cache.evictions());
+		assertEquals(3, cache.hits());
+		assertEquals(1, cache.misses());
+	}
+
+	@Test
+	public void boundedTest() {
+		LRUCache<Integer, Integer> cache = new LRUCache<Integer, Integer>(100);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(100, cache.size());
+		assertEquals(900, cache.evictions());
+	}
+
+	@Test
+	public void disabledTest() {
+		LRUCache<String, String> cache = new LRUCache<String, String>(0);
+		cache.put("a", "a");
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.misses());
+	}
+}